@@ -0,0 +1,124 @@
+/*
+ * AssetMatcherBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.rest.model.asset.HardwareAsset;
+import com.sitewhere.rest.model.asset.PersonAsset;
+import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
+
+/**
+ * Measures a search over a cache of assets by scanning with {@link AssetMatcher} and by
+ * looking up an {@link AssetSearchIndex}.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssetMatcherBenchmark {
+
+	/** Number of assets of each kind */
+	@Param({ "1000", "10000", "100000" })
+	public int assets;
+
+	/** Search criteria (already lowercase as the modules pass it) */
+	@Param({ "se", "sensor 42", "nomatch" })
+	public String criteria;
+
+	/** Matcher being measured */
+	private AssetMatcher matcher = new AssetMatcher();
+
+	/** Hardware assets */
+	private List<HardwareAsset> hardware;
+
+	/** Person assets */
+	private List<PersonAsset> people;
+
+	/** Index over hardware assets */
+	private AssetSearchIndex<HardwareAsset> hardwareIndex;
+
+	/** Index over person assets */
+	private AssetSearchIndex<PersonAsset> peopleIndex;
+
+	@Setup
+	public void setup() {
+		hardware = new ArrayList<HardwareAsset>(assets);
+		people = new ArrayList<PersonAsset>(assets);
+		for (int i = 0; i < assets; i++) {
+			HardwareAsset asset = new HardwareAsset();
+			asset.setId("hw-" + i);
+			asset.setName("Sensor " + i);
+			asset.setDescription("Temperature and humidity sensor model " + (i % 97));
+			asset.setSku("SKU-" + i);
+			hardware.add(asset);
+
+			PersonAsset person = new PersonAsset();
+			person.setId("person-" + i);
+			person.setName("Person " + i);
+			person.setUserName("user" + i);
+			person.setEmailAddress("user" + i + "@example.com");
+			people.add(person);
+		}
+		hardwareIndex = AssetSearchIndex.forHardware(hardware, matcher);
+		peopleIndex = AssetSearchIndex.forPeople(people, matcher);
+	}
+
+	@Benchmark
+	public List<HardwareAsset> searchHardware() {
+		List<HardwareAsset> results = new ArrayList<HardwareAsset>();
+		for (HardwareAsset asset : hardware) {
+			if (matcher.isHardwareMatch(asset, criteria)) {
+				results.add(asset);
+			}
+		}
+		return results;
+	}
+
+	@Benchmark
+	public List<PersonAsset> searchPeople() {
+		List<PersonAsset> results = new ArrayList<PersonAsset>();
+		for (PersonAsset person : people) {
+			if (matcher.isPersonMatch(person, criteria)) {
+				results.add(person);
+			}
+		}
+		return results;
+	}
+
+	@Benchmark
+	public List<HardwareAsset> searchHardwareIndex() {
+		return hardwareIndex.search(criteria);
+	}
+
+	@Benchmark
+	public List<PersonAsset> searchPeopleIndex() {
+		return peopleIndex.search(criteria);
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * AssignmentStateMergeBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.device.DeviceAlert;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.DeviceAssignmentState;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.rest.model.device.DeviceMeasurement;
+import com.sitewhere.rest.model.device.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.AlertLevel;
+
+/**
+ * Compares the map-rebuilding assignment state logic with the in-place merge logic for
+ * latest measurements and alerts.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AssignmentStateMergeBenchmark {
+
+	/** Number of measurement names and alert types already in the state */
+	@Param({ "10", "100", "500" })
+	public int existingNames;
+
+	/** Number of measurement names and alert types updated by the batch */
+	@Param({ "1", "10", "100" })
+	public int updatedNames;
+
+	/** Assignment holding existing state */
+	private DeviceAssignment assignment;
+
+	/** Batch of updates */
+	private DeviceEventBatch batch;
+
+	@Setup
+	public void setup() {
+		long now = System.currentTimeMillis();
+		assignment = new DeviceAssignment();
+		assignment.setToken("benchmark");
+		assignment.setSiteToken("site");
+		DeviceAssignmentState state = new DeviceAssignmentState();
+		for (int i = 0; i < existingNames; i++) {
+			DeviceMeasurement m = new DeviceMeasurement();
+			m.setName("measurement." + i);
+			m.setValue((double) i);
+			m.setEventDate(new Date(now - 60000));
+			state.getLatestMeasurements().add(m);
+
+			DeviceAlert a = new DeviceAlert();
+			a.setType("alert." + i);
+			a.setLevel(AlertLevel.Info);
+			a.setEventDate(new Date(now - 60000));
+			state.getLatestAlerts().add(a);
+		}
+		assignment.setState(state);
+
+		batch = new DeviceEventBatch();
+		DeviceMeasurementsCreateRequest mx = new DeviceMeasurementsCreateRequest();
+		mx.setEventDate(new Date(now));
+		for (int i = 0; i < updatedNames; i++) {
+			mx.addOrReplaceMeasurement("measurement." + (i * 2), (double) i);
+
+			DeviceAlertCreateRequest alert = new DeviceAlertCreateRequest();
+			alert.setType("alert." + (i * 2));
+			alert.setLevel(AlertLevel.Warning);
+			alert.setMessage("Benchmark alert.");
+			alert.setEventDate(new Date(now));
+			batch.getAlerts().add(alert);
+		}
+		batch.getMeasurements().add(mx);
+	}
+
+	@Benchmark
+	public DeviceAssignmentState updateLogic() throws SiteWhereException {
+		DeviceAssignmentState updated = new DeviceAssignmentState();
+		SiteWherePersistence.assignmentStateMeasurementsUpdateLogic(assignment, updated, batch);
+		SiteWherePersistence.assignmentStateAlertsUpdateLogic(assignment, updated, batch);
+		return updated;
+	}
+
+	@Benchmark
+	public DeviceAssignmentState mergeLogic() throws SiteWhereException {
+		DeviceAssignmentState updated = new DeviceAssignmentState();
+		SiteWherePersistence.assignmentStateMeasurementsMergeLogic(assignment, updated, batch);
+		SiteWherePersistence.assignmentStateAlertsMergeLogic(assignment, updated, batch);
+		return updated;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * ChartBuilderBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.core.device.charting.ChartBuilder;
+import com.sitewhere.rest.model.device.DeviceMeasurements;
+import com.sitewhere.spi.device.IDeviceMeasurements;
+import com.sitewhere.spi.device.charting.IChartSeries;
+
+/**
+ * Measures building chart series from a list of measurements events.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChartBuilderBenchmark {
+
+	/** Number of measurements events */
+	@Param({ "1000", "10000", "100000" })
+	public int events;
+
+	/** Number of measurement names in each event */
+	@Param({ "1", "5" })
+	public int measurementsPerEvent;
+
+	/** Target points per series for downsampled charts */
+	@Param({ "1000" })
+	public int targetPoints;
+
+	/** Measurements events in the order a datastore query would return them */
+	private List<IDeviceMeasurements> matches;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		long start = System.currentTimeMillis() - (events * 60000L);
+		matches = new ArrayList<IDeviceMeasurements>(events);
+		for (int i = 0; i < events; i++) {
+			DeviceMeasurements mx = new DeviceMeasurements();
+			mx.setEventDate(new Date(start + (i * 60000L)));
+			for (int j = 0; j < measurementsPerEvent; j++) {
+				mx.addOrReplaceMeasurement("measurement." + j, random.nextDouble() * 100);
+			}
+			matches.add(mx);
+		}
+		// Queries return newest first.
+		Collections.reverse(matches);
+	}
+
+	@Benchmark
+	public List<IChartSeries<Double>> process() {
+		return new ChartBuilder().process(matches);
+	}
+
+	@Benchmark
+	public List<IChartSeries<Double>> processDownsampled() {
+		return new ChartBuilder().process(matches, targetPoints);
+	}
+}
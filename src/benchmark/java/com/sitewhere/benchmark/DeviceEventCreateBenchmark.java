@@ -0,0 +1,122 @@
+/*
+ * DeviceEventCreateBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.DeviceAssignmentState;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.rest.model.device.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.AlertLevel;
+import com.sitewhere.spi.device.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest;
+
+/**
+ * Measures the common persistence logic run for every incoming event batch: creating the
+ * event entities from their requests and computing the updated assignment state.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeviceEventCreateBenchmark {
+
+	/** Number of each event type in a batch */
+	@Param({ "1", "10", "100" })
+	public int eventsPerBatch;
+
+	/** Number of measurement names in each measurements event */
+	@Param({ "1", "10" })
+	public int measurementsPerEvent;
+
+	/** Assignment events are created for */
+	private DeviceAssignment assignment;
+
+	/** Batch of event requests */
+	private DeviceEventBatch batch;
+
+	@Setup
+	public void setup() {
+		assignment = new DeviceAssignment();
+		assignment.setToken("assignment");
+		assignment.setSiteToken("site");
+		assignment.setDeviceHardwareId("device");
+		assignment.setAssetId("asset");
+		assignment.setState(new DeviceAssignmentState());
+
+		long now = System.currentTimeMillis();
+		batch = new DeviceEventBatch();
+		for (int i = 0; i < eventsPerBatch; i++) {
+			Date date = new Date(now - ((eventsPerBatch - i) * 1000));
+			DeviceMeasurementsCreateRequest mx = new DeviceMeasurementsCreateRequest();
+			mx.setEventDate(date);
+			for (int j = 0; j < measurementsPerEvent; j++) {
+				mx.addOrReplaceMeasurement("measurement." + j, (double) (i + j));
+			}
+			batch.getMeasurements().add(mx);
+
+			DeviceLocationCreateRequest location = new DeviceLocationCreateRequest();
+			location.setEventDate(date);
+			location.setLatitude(33.75 + (i * 0.0001));
+			location.setLongitude(-84.39 + (i * 0.0001));
+			location.setElevation(0.0);
+			batch.getLocations().add(location);
+
+			DeviceAlertCreateRequest alert = new DeviceAlertCreateRequest();
+			alert.setEventDate(date);
+			alert.setType("alert." + (i % 10));
+			alert.setLevel(AlertLevel.Warning);
+			alert.setMessage("Benchmark alert.");
+			batch.getAlerts().add(alert);
+		}
+	}
+
+	@Benchmark
+	public void createEvents(Blackhole hole) throws SiteWhereException {
+		for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+			hole.consume(SiteWherePersistence.deviceMeasurementsCreateLogic(request, assignment));
+		}
+		for (IDeviceLocationCreateRequest request : batch.getLocations()) {
+			hole.consume(SiteWherePersistence.deviceLocationCreateLogic(assignment, request));
+		}
+		for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+			hole.consume(SiteWherePersistence.deviceAlertCreateLogic(assignment, request));
+		}
+	}
+
+	@Benchmark
+	public DeviceAssignmentState updateState() throws SiteWhereException {
+		return SiteWherePersistence.assignmentStateUpdateLogic(assignment, batch);
+	}
+}
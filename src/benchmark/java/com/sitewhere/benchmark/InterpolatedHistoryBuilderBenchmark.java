@@ -0,0 +1,115 @@
+/*
+ * InterpolatedHistoryBuilderBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sitewhere.core.DaemonThreadFactory;
+import com.sitewhere.core.device.InterpolatedHistoryBuilder;
+import com.sitewhere.rest.model.device.DeviceLocation;
+import com.sitewhere.rest.model.device.InterpolatedAssignmentHistory;
+import com.sitewhere.spi.device.IDeviceLocation;
+
+/**
+ * Measures building interpolated location history for a group of assignments.
+ * 
+ * @author Derek
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InterpolatedHistoryBuilderBenchmark {
+
+	/** Number of assignments with location history */
+	@Param({ "1", "10", "100" })
+	public int assignments;
+
+	/** Length of the history window in minutes */
+	@Param({ "60", "1440" })
+	public int minutes;
+
+	/** Minutes between consecutive locations for an assignment */
+	@Param({ "5" })
+	public int reportIntervalMinutes;
+
+	/** Threads used to build assignments in parallel or zero to build sequentially */
+	@Param({ "0", "4" })
+	public int threads;
+
+	/** Locations for all assignments */
+	private List<IDeviceLocation> matches;
+
+	/** Builder under test */
+	private InterpolatedHistoryBuilder builder;
+
+	/** Executor supplied to the builder or null if sequential */
+	private ExecutorService executor;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(1);
+		long start = (System.currentTimeMillis() / 60000L) * 60000L - (minutes * 60000L);
+		matches = new ArrayList<IDeviceLocation>();
+		for (int a = 0; a < assignments; a++) {
+			double lat = 33.75;
+			double lon = -84.39;
+			for (int m = 0; m <= minutes; m += reportIntervalMinutes) {
+				DeviceLocation location = new DeviceLocation();
+				location.setDeviceAssignmentToken("assignment." + a);
+				location.setEventDate(new Date(start + (m * 60000L) + random.nextInt(60000)));
+				location.setLatitude(lat);
+				location.setLongitude(lon);
+				location.setElevation(0.0);
+				matches.add(location);
+				lat += (random.nextDouble() - 0.5) * 0.001;
+				lon += (random.nextDouble() - 0.5) * 0.001;
+			}
+		}
+		builder = new InterpolatedHistoryBuilder();
+		if (threads > 0) {
+			executor = Executors.newFixedThreadPool(threads, new DaemonThreadFactory("Benchmark History Builder"));
+			builder.setExecutor(executor);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Benchmark
+	public List<InterpolatedAssignmentHistory> build() {
+		return builder.build(matches);
+	}
+}
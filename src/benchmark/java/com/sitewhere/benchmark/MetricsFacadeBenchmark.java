@@ -0,0 +1,129 @@
+/*
+ * MetricsFacadeBenchmark.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.rest.model.device.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.server.metrics.MetricsFacade;
+import com.sitewhere.server.metrics.SlowCallLog;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.DeviceManagementAdapter;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceEventBatch;
+import com.sitewhere.spi.device.IDeviceManagement;
+
+/**
+ * Measures the overhead {@link MetricsFacade} adds to device management calls by comparing
+ * calls through the proxy with direct calls on an in-memory implementation.
+ * 
+ * @author Derek
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsFacadeBenchmark {
+
+	/** Number of events in the batch passed to state updates */
+	@Param({ "1", "100" })
+	public int eventsPerBatch;
+
+	/** Number of site and assignment tokens timed by the facade (zero disables) */
+	@Param({ "0", "100" })
+	public int trackedTokens;
+
+	/** Implementation without metrics */
+	private IDeviceManagement raw;
+
+	/** Same implementation wrapped for metrics */
+	private IDeviceManagement measured;
+
+	/** Batch passed to state updates */
+	private DeviceEventBatch batch;
+
+	@Setup
+	public void setup() {
+		raw = new InMemoryDeviceManagement();
+		measured = MetricsFacade.wrap(IDeviceManagement.class, raw, new MetricRegistry(), trackedTokens,
+				new SlowCallLog(SlowCallLog.DEFAULT_THRESHOLD_MS, SlowCallLog.DEFAULT_CAPACITY));
+		batch = new DeviceEventBatch();
+		for (int i = 0; i < eventsPerBatch; i++) {
+			DeviceMeasurementsCreateRequest mx = new DeviceMeasurementsCreateRequest();
+			mx.setEventDate(new Date());
+			mx.addOrReplaceMeasurement("measurement", (double) i);
+			batch.getMeasurements().add(mx);
+		}
+	}
+
+	@Benchmark
+	public IDeviceAssignment rawLookup() throws SiteWhereException {
+		return raw.getDeviceAssignmentByToken("assignment");
+	}
+
+	@Benchmark
+	public IDeviceAssignment measuredLookup() throws SiteWhereException {
+		return measured.getDeviceAssignmentByToken("assignment");
+	}
+
+	@Benchmark
+	public IDeviceAssignment rawStateUpdate() throws SiteWhereException {
+		return raw.updateDeviceAssignmentState("assignment", batch);
+	}
+
+	@Benchmark
+	public IDeviceAssignment measuredStateUpdate() throws SiteWhereException {
+		return measured.updateDeviceAssignmentState("assignment", batch);
+	}
+
+	/**
+	 * Device management that answers from memory so only the facade cost is measured.
+	 * 
+	 * @author Derek
+	 */
+	public static class InMemoryDeviceManagement extends DeviceManagementAdapter {
+
+		/** Assignment returned for every token */
+		private DeviceAssignment assignment = new DeviceAssignment();
+
+		public InMemoryDeviceManagement() {
+			assignment.setToken("assignment");
+			assignment.setSiteToken("site");
+			assignment.setDeviceHardwareId("device");
+		}
+
+		public IDeviceAssignment getDeviceAssignmentByToken(String token) throws SiteWhereException {
+			return assignment;
+		}
+
+		public IDeviceAssignment updateDeviceAssignmentState(String token, IDeviceEventBatch batch)
+				throws SiteWhereException {
+			return assignment;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * DaemonThreadFactory.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.core;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named daemon threads so that background workers do not block shutdown of the
+ * servlet container.
+ * 
+ * @author Derek
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+
+	/** Prefix for thread names */
+	private String prefix;
+
+	/** Counter used for unique thread names */
+	private AtomicInteger counter = new AtomicInteger();
+
+	public DaemonThreadFactory(String prefix) {
+		this.prefix = prefix;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+	 */
+	public Thread newThread(Runnable r) {
+		Thread thread = new Thread(r, prefix + " " + counter.incrementAndGet());
+		thread.setDaemon(true);
+		return thread;
+	}
+}
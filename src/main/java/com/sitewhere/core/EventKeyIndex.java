@@ -0,0 +1,98 @@
+/*
+ * EventKeyIndex.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ *
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.core;
+
+/**
+ * Open-addressed index from a string key to a position in a list. The index stores only
+ * positions in a single int array and reads keys back from the list, so building it does
+ * not allocate map entries or boxed integers. Capacity is fixed at creation and must cover
+ * the maximum number of keys that will be added.
+ * 
+ * @author Derek
+ */
+public abstract class EventKeyIndex {
+
+	/** Slots holding position + 1, or zero if empty */
+	private final int[] slots;
+
+	/** Mask used to wrap slot indexes */
+	private final int mask;
+
+	public EventKeyIndex(int maxKeys) {
+		int capacity = Integer.highestOneBit(Math.max(4, maxKeys) * 2 - 1) << 1;
+		this.slots = new int[capacity];
+		this.mask = capacity - 1;
+	}
+
+	/**
+	 * Get the key stored at a position in the indexed list.
+	 * 
+	 * @param position
+	 * @return
+	 */
+	protected abstract String keyAt(int position);
+
+	/**
+	 * Find the list position for a key.
+	 * 
+	 * @param key
+	 * @return position or -1 if not indexed
+	 */
+	public int find(String key) {
+		int slot = slotFor(key);
+		while (true) {
+			int stored = slots[slot];
+			if (stored == 0) {
+				return -1;
+			}
+			if (equal(key, keyAt(stored - 1))) {
+				return stored - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Add a key that is not already indexed.
+	 * 
+	 * @param key
+	 * @param position
+	 */
+	public void add(String key, int position) {
+		int slot = slotFor(key);
+		while (slots[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = position + 1;
+	}
+
+	/**
+	 * Get the initial slot for a key.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	protected int slotFor(String key) {
+		int h = (key == null) ? 0 : key.hashCode();
+		h ^= (h >>> 16);
+		return h & mask;
+	}
+
+	/**
+	 * Compare possibly null keys.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	protected static boolean equal(String a, String b) {
+		return (a == null) ? (b == null) : a.equals(b);
+	}
+}
@@ -11,6 +11,7 @@ package com.sitewhere.core;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.springframework.security.authentication.encoding.MessageDigestPasswordEncoder;
@@ -242,8 +243,8 @@ public class SiteWherePersistence {
 			IDeviceEventBatch batch) throws SiteWhereException {
 		DeviceAssignmentState state = new DeviceAssignmentState();
 		assignmentStateLocationUpdateLogic(assignment, state, batch);
-		assignmentStateMeasurementsUpdateLogic(assignment, state, batch);
-		assignmentStateAlertsUpdateLogic(assignment, state, batch);
+		assignmentStateMeasurementsMergeLogic(assignment, state, batch);
+		assignmentStateAlertsMergeLogic(assignment, state, batch);
 		return state;
 	}
 
@@ -346,6 +347,139 @@ public class SiteWherePersistence {
 		}
 	}
 
+	/**
+	 * Update state "latest measurements" based on new measurements from batch. Produces
+	 * the same entries as
+	 * {@link #assignmentStateMeasurementsUpdateLogic(IDeviceAssignment, DeviceAssignmentState, IDeviceEventBatch)}
+	 * but reuses existing entries in place and only creates measurements for names that
+	 * changed. Existing entries keep their order and new names are appended.
+	 * 
+	 * @param assignment
+	 * @param updated
+	 * @param batch
+	 * @throws SiteWhereException
+	 */
+	public static void assignmentStateMeasurementsMergeLogic(IDeviceAssignment assignment,
+			DeviceAssignmentState updated, IDeviceEventBatch batch) throws SiteWhereException {
+		IDeviceAssignmentState existing = assignment.getState();
+		final List<IDeviceMeasurement> latest = updated.getLatestMeasurements();
+		latest.clear();
+
+		// Size the index for every key that could be added.
+		int maxKeys = 0;
+		if ((existing != null) && (existing.getLatestMeasurements() != null)) {
+			maxKeys += existing.getLatestMeasurements().size();
+		}
+		if (batch.getMeasurements() != null) {
+			for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+				maxKeys += request.getMeasurements().size();
+			}
+		}
+		if (maxKeys == 0) {
+			return;
+		}
+		EventKeyIndex index = new EventKeyIndex(maxKeys) {
+
+			protected String keyAt(int position) {
+				return latest.get(position).getName();
+			}
+		};
+		if ((existing != null) && (existing.getLatestMeasurements() != null)) {
+			for (IDeviceMeasurement m : existing.getLatestMeasurements()) {
+				int position = index.find(m.getName());
+				if (position == -1) {
+					index.add(m.getName(), latest.size());
+					latest.add(m);
+				} else {
+					latest.set(position, m);
+				}
+			}
+		}
+		if (batch.getMeasurements() != null) {
+			for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+				for (String key : request.getMeasurements().keySet()) {
+					int position = index.find(key);
+					IDeviceMeasurement em = (position == -1) ? null : latest.get(position);
+					if ((em == null) || (em.getEventDate().before(request.getEventDate()))) {
+						DeviceMeasurement newMeasurement = new DeviceMeasurement();
+						deviceEventCreateLogic(request, assignment, newMeasurement);
+						newMeasurement.setName(key);
+						newMeasurement.setValue(request.getMeasurement(key));
+						if (position == -1) {
+							index.add(key, latest.size());
+							latest.add(newMeasurement);
+						} else {
+							latest.set(position, newMeasurement);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Update state "latest alerts" based on new alerts from batch. Produces the same
+	 * entries as
+	 * {@link #assignmentStateAlertsUpdateLogic(IDeviceAssignment, DeviceAssignmentState, IDeviceEventBatch)}
+	 * but reuses existing entries in place and only creates alerts for types that changed.
+	 * Existing entries keep their order and new types are appended.
+	 * 
+	 * @param assignment
+	 * @param updated
+	 * @param batch
+	 * @throws SiteWhereException
+	 */
+	public static void assignmentStateAlertsMergeLogic(IDeviceAssignment assignment,
+			DeviceAssignmentState updated, IDeviceEventBatch batch) throws SiteWhereException {
+		IDeviceAssignmentState existing = assignment.getState();
+		final List<IDeviceAlert> latest = updated.getLatestAlerts();
+		latest.clear();
+
+		// Size the index for every key that could be added.
+		int maxKeys = 0;
+		if ((existing != null) && (existing.getLatestAlerts() != null)) {
+			maxKeys += existing.getLatestAlerts().size();
+		}
+		if (batch.getAlerts() != null) {
+			maxKeys += batch.getAlerts().size();
+		}
+		if (maxKeys == 0) {
+			return;
+		}
+		EventKeyIndex index = new EventKeyIndex(maxKeys) {
+
+			protected String keyAt(int position) {
+				return latest.get(position).getType();
+			}
+		};
+		if ((existing != null) && (existing.getLatestAlerts() != null)) {
+			for (IDeviceAlert a : existing.getLatestAlerts()) {
+				int position = index.find(a.getType());
+				if (position == -1) {
+					index.add(a.getType(), latest.size());
+					latest.add(a);
+				} else {
+					latest.set(position, a);
+				}
+			}
+		}
+		if (batch.getAlerts() != null) {
+			for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+				int position = index.find(request.getType());
+				IDeviceAlert ea = (position == -1) ? null : latest.get(position);
+				if ((ea == null) || (ea.getEventDate().before(request.getEventDate()))) {
+					DeviceAlert newAlert = deviceAlertCreateLogic(assignment, request);
+					if (position == -1) {
+						index.add(newAlert.getType(), latest.size());
+						latest.add(newAlert);
+					} else {
+						latest.set(position, newAlert);
+					}
+				}
+			}
+		}
+	}
+
 	/**
 	 * Common logic for creating a zone based on an incoming request.
 	 * 
@@ -11,12 +11,15 @@
 package com.sitewhere.core.device;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.sitewhere.rest.model.common.Location;
 import com.sitewhere.rest.model.device.DeviceAssignmentHistoryEntry;
@@ -24,127 +27,207 @@ import com.sitewhere.rest.model.device.InterpolatedAssignmentHistory;
 import com.sitewhere.spi.device.IDeviceLocation;
 
 /**
- * Builds an interpolated history based on location results.
+ * Builds an interpolated history based on location results. Location times are rounded
+ * down to a slot boundary and every assignment gets one slot per slot width from the
+ * earliest to the latest location across all assignments. Slot positions are computed
+ * directly from their times. If an executor is supplied, assignments are built on it in
+ * parallel when there is enough data to make it worthwhile. The builder does not own the
+ * executor and never shuts it down.
+ * 
+ * The builder holds no per-call state, so a configured instance may be reused and called
+ * from many threads.
  * 
  * @author Derek Adams
  */
 public class InterpolatedHistoryBuilder {
 
-	/** Map of locations by device assignment */
-	private Map<String, List<IDeviceLocation>> locationsByAssignment = new HashMap<String, List<IDeviceLocation>>();
+	/** Default width of a slot in milliseconds */
+	public static final long DEFAULT_SLOT_WIDTH_MS = 60 * 1000;
+
+	/** Default number of locations needed before assignments are built in parallel */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
 
-	/** Minimum slot value */
-	private Long minSlot;
+	/** Width of a slot in milliseconds */
+	private long slotWidthMs = DEFAULT_SLOT_WIDTH_MS;
 
-	/** Maximum slot value */
-	private Long maxSlot;
+	/** Number of locations needed before assignments are built in parallel */
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	/** Executor used to build assignments in parallel or null to build sequentially */
+	private ExecutorService executor;
 
 	/** Build history entries for all assignments */
 	public List<InterpolatedAssignmentHistory> build(List<IDeviceLocation> matches) {
-		prepareData(matches);
+		final long slotWidth = slotWidthMs;
+		final Map<String, List<IDeviceLocation>> locationsByAssignment =
+				new LinkedHashMap<String, List<IDeviceLocation>>();
+		long minSlot = Long.MAX_VALUE;
+		long maxSlot = Long.MIN_VALUE;
+		int count = 0;
+		for (IDeviceLocation location : matches) {
+			if (location.getEventDate() == null) {
+				continue;
+			}
+			List<IDeviceLocation> match = locationsByAssignment.get(location.getDeviceAssignmentToken());
+			if (match == null) {
+				match = new ArrayList<IDeviceLocation>();
+				locationsByAssignment.put(location.getDeviceAssignmentToken(), match);
+			}
+			long locSlot = slotOf(location, slotWidth);
+			minSlot = Math.min(minSlot, locSlot);
+			maxSlot = Math.max(maxSlot, locSlot);
+			match.add(location);
+			count++;
+		}
 		List<InterpolatedAssignmentHistory> results = new ArrayList<InterpolatedAssignmentHistory>();
-		for (String assignmentToken : locationsByAssignment.keySet()) {
-			InterpolatedAssignmentHistory history = createEntryFor(assignmentToken);
-			results.add(history);
+		if (count == 0) {
+			return results;
+		}
+		final long min = minSlot;
+		final int numSlots = (int) ((maxSlot - minSlot + slotWidth - 1) / slotWidth);
+		ExecutorService pool = executor;
+		if ((pool == null) || (count < parallelThreshold) || (locationsByAssignment.size() < 2)) {
+			for (Map.Entry<String, List<IDeviceLocation>> entry : locationsByAssignment.entrySet()) {
+				results.add(createEntryFor(entry.getKey(), entry.getValue(), min, numSlots, slotWidth));
+			}
+			return results;
+		}
+		List<Future<InterpolatedAssignmentHistory>> futures =
+				new ArrayList<Future<InterpolatedAssignmentHistory>>();
+		for (final Map.Entry<String, List<IDeviceLocation>> entry : locationsByAssignment.entrySet()) {
+			futures.add(pool.submit(new Callable<InterpolatedAssignmentHistory>() {
+
+				public InterpolatedAssignmentHistory call() throws Exception {
+					return createEntryFor(entry.getKey(), entry.getValue(), min, numSlots, slotWidth);
+				}
+			}));
+		}
+		for (Future<InterpolatedAssignmentHistory> future : futures) {
+			results.add(getResult(future));
 		}
 		return results;
 	}
 
+	/** Wait for a history built on the executor, passing on any failure */
+	protected InterpolatedAssignmentHistory getResult(Future<InterpolatedAssignmentHistory> future) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) e.getCause();
+					}
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw new RuntimeException(e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
 	/** Create a history entry for an assignment */
-	protected InterpolatedAssignmentHistory createEntryFor(String assignmentToken) {
+	protected InterpolatedAssignmentHistory createEntryFor(String assignmentToken,
+			List<IDeviceLocation> locations, long minSlot, int numSlots, final long slotWidth) {
 		InterpolatedAssignmentHistory history = new InterpolatedAssignmentHistory();
 		history.setDeviceAssignmentToken(assignmentToken);
-		history.setSlots(createEmptySlots());
-		List<IDeviceLocation> locations = locationsByAssignment.get(assignmentToken);
-		if (locations != null) {
-			Collections.sort(locations);
-			IDeviceLocation last = null;
-			for (IDeviceLocation location : locations) {
-				if (last == null) {
-					last = location;
-					continue;
-				}
-				interpolate(history, last, location);
-				last = location;
+		DeviceAssignmentHistoryEntry[] slots = createEmptySlots(minSlot, numSlots, slotWidth);
+		Collections.sort(locations, new Comparator<IDeviceLocation>() {
+
+			public int compare(IDeviceLocation a, IDeviceLocation b) {
+				long slotA = slotOf(a, slotWidth);
+				long slotB = slotOf(b, slotWidth);
+				return (slotA < slotB) ? -1 : ((slotA == slotB) ? 0 : 1);
 			}
+		});
+		IDeviceLocation last = null;
+		for (IDeviceLocation location : locations) {
+			if (last != null) {
+				interpolate(slots, minSlot, slotWidth, last, location);
+			}
+			last = location;
 		}
+		List<DeviceAssignmentHistoryEntry> entries = new ArrayList<DeviceAssignmentHistoryEntry>(numSlots);
+		Collections.addAll(entries, slots);
+		history.setSlots(entries);
 		return history;
 	}
 
 	/** Fill in slots with interpolated information */
-	protected void interpolate(InterpolatedAssignmentHistory history, IDeviceLocation last,
-			IDeviceLocation location) {
-		long lastSlot = last.getEventDate().getTime();
-		long currSlot = location.getEventDate().getTime();
+	protected void interpolate(DeviceAssignmentHistoryEntry[] slots, long minSlot, long slotWidth,
+			IDeviceLocation last, IDeviceLocation location) {
+		long lastSlot = slotOf(last, slotWidth);
+		long currSlot = slotOf(location, slotWidth);
 		double lastLat = last.getLatitude();
 		double currLat = location.getLatitude();
 		double lastLong = last.getLongitude();
 		double currLong = location.getLongitude();
-		int numSlots = ((int) (currSlot - lastSlot) / (60 * 1000));
+		int numSlots = (int) ((currSlot - lastSlot) / slotWidth);
 		double latDelta = (currLat - lastLat) / numSlots;
 		double longDelta = (currLong - lastLong) / numSlots;
+		int first = (int) ((lastSlot - minSlot) / slotWidth);
 		for (int i = 0; i < numSlots; i++) {
-			long slot = (lastSlot + (i * (60 * 1000)));
-			double lat = (lastLat + (i * latDelta));
-			double lon = (lastLong + (i * longDelta));
-			setSlotValue(history, slot, lat, lon);
-		}
-	}
-
-	/** Set value into one of the history slots */
-	protected void setSlotValue(InterpolatedAssignmentHistory history, long slot, double lat, double lon) {
-		for (DeviceAssignmentHistoryEntry entry : history.getSlots()) {
-			if (entry.getTimeSlot() == slot) {
-				Location location = new Location();
-				location.setLatitude(lat);
-				location.setLongitude(lon);
-				entry.setLocation(location);
-				return;
+			int index = first + i;
+			if (index >= slots.length) {
+				break;
 			}
+			Location interpolated = new Location();
+			interpolated.setLatitude(lastLat + (i * latDelta));
+			interpolated.setLongitude(lastLong + (i * longDelta));
+			slots[index].setLocation(interpolated);
 		}
-		System.out.println("Invalid slot value");
 	}
 
-	/** Create empty list of all slot values */
-	protected List<DeviceAssignmentHistoryEntry> createEmptySlots() {
-		List<DeviceAssignmentHistoryEntry> entries = new ArrayList<DeviceAssignmentHistoryEntry>();
-		long slot = minSlot;
-		while (slot < maxSlot) {
+	/** Create empty slots covering the time range */
+	protected DeviceAssignmentHistoryEntry[] createEmptySlots(long minSlot, int numSlots, long slotWidth) {
+		DeviceAssignmentHistoryEntry[] entries = new DeviceAssignmentHistoryEntry[numSlots];
+		for (int i = 0; i < numSlots; i++) {
 			DeviceAssignmentHistoryEntry entry = new DeviceAssignmentHistoryEntry();
-			entry.setTimeSlot(slot);
-			entries.add(entry);
-			slot += (60 * 1000);
+			entry.setTimeSlot(minSlot + (i * slotWidth));
+			entries[i] = entry;
 		}
 		return entries;
 	}
 
-	/** Prepare data */
-	protected void prepareData(List<IDeviceLocation> locations) {
-		locationsByAssignment.clear();
-		for (IDeviceLocation location : locations) {
-			List<IDeviceLocation> match = locationsByAssignment.get(location.getDeviceAssignmentToken());
-			if (match == null) {
-				match = new ArrayList<IDeviceLocation>();
-				locationsByAssignment.put(location.getDeviceAssignmentToken(), match);
-			}
-			roundToTheMinute(location.getEventDate());
-			long locSlot = location.getEventDate().getTime();
-			if ((minSlot == null) || (minSlot > locSlot)) {
-				minSlot = locSlot;
-			}
-			if ((maxSlot == null) || (maxSlot < locSlot)) {
-				maxSlot = locSlot;
-			}
-			match.add(location);
+	/** Get the start of the slot containing a location without modifying its date */
+	protected static long slotOf(IDeviceLocation location, long slotWidth) {
+		long time = location.getEventDate().getTime();
+		long offset = time % slotWidth;
+		return (offset < 0) ? (time - offset - slotWidth) : (time - offset);
+	}
+
+	public long getSlotWidthMs() {
+		return slotWidthMs;
+	}
+
+	public void setSlotWidthMs(long slotWidthMs) {
+		if (slotWidthMs <= 0) {
+			throw new IllegalArgumentException("Slot width must be positive.");
 		}
+		this.slotWidthMs = slotWidthMs;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
 	}
 
-	/** Gets rid of everything below the minute on a date */
-	protected void roundToTheMinute(Date input) {
-		Calendar cal = Calendar.getInstance();
-		cal.setTime(input);
-		cal.set(Calendar.SECOND, 0);
-		cal.set(Calendar.MILLISECOND, 0);
-		input.setTime(cal.getTimeInMillis());
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
 	}
 }
\ No newline at end of file
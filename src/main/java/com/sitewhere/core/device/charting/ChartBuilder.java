@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -22,7 +23,8 @@ import com.sitewhere.spi.device.IDeviceMeasurements;
 import com.sitewhere.spi.device.charting.IChartSeries;
 
 /**
- * Builds chart series from measurements.
+ * Builds chart series from measurements. Series may be built at full resolution or
+ * downsampled to a target number of points using min/max bucketing.
  * 
  * @author Derek
  */
@@ -55,6 +57,90 @@ public class ChartBuilder {
 		return results;
 	}
 
+	/**
+	 * Process measurements into a list of chart series with at most the given number of
+	 * points in each series. The time range of the matches is divided into
+	 * <code>targetPoints / 2</code> equal buckets and only the lowest and highest value of
+	 * each measurement in each bucket are kept, so peaks survive downsampling. An odd
+	 * target is rounded down, so the series have at most <code>targetPoints - 1</code>
+	 * points. A target of one uses a single bucket and keeps only its highest value. There
+	 * are never more buckets than milliseconds in the time range. Memory use is bounded by
+	 * the number of series times the target point count no matter how many measurements
+	 * are processed. A target of zero or less returns full resolution.
+	 * 
+	 * @param matches
+	 * @param targetPoints
+	 * @return
+	 */
+	public List<IChartSeries<Double>> process(List<IDeviceMeasurements> matches, int targetPoints) {
+		if (targetPoints <= 0) {
+			return process(matches);
+		}
+		List<IChartSeries<Double>> results = new ArrayList<IChartSeries<Double>>();
+
+		// Find the time range covered by the matches.
+		long start = Long.MAX_VALUE;
+		long end = Long.MIN_VALUE;
+		for (IDeviceMeasurements measurements : matches) {
+			if (measurements.getEventDate() != null) {
+				long time = measurements.getEventDate().getTime();
+				start = Math.min(start, time);
+				end = Math.max(end, time);
+			}
+		}
+		if (start > end) {
+			return results;
+		}
+
+		// Keep the minimum and maximum value in each bucket for every measurement.
+		boolean maxOnly = (targetPoints < 2);
+		long span = end - start + 1;
+		int buckets = Math.max(1, targetPoints / 2);
+		if (span < buckets) {
+			buckets = (int) span;
+		}
+		Map<String, MinMaxBuckets> bucketsByMeasurementName = new LinkedHashMap<String, MinMaxBuckets>();
+		for (IDeviceMeasurements measurements : matches) {
+			if (measurements.getEventDate() == null) {
+				continue;
+			}
+			long time = measurements.getEventDate().getTime();
+			int bucket = getBucket(time - start, span, buckets);
+			for (String key : measurements.getMeasurements().keySet()) {
+				Double value = measurements.getMeasurement(key);
+				if (value == null) {
+					continue;
+				}
+				MinMaxBuckets series = bucketsByMeasurementName.get(key);
+				if (series == null) {
+					series = new MinMaxBuckets(buckets, maxOnly);
+					bucketsByMeasurementName.put(key, series);
+				}
+				series.add(bucket, time, value);
+			}
+		}
+		for (Map.Entry<String, MinMaxBuckets> entry : bucketsByMeasurementName.entrySet()) {
+			results.add(entry.getValue().toSeries(entry.getKey()));
+		}
+		return results;
+	}
+
+	/**
+	 * Get the bucket for an offset into the time range. Uses exact arithmetic unless the
+	 * product of offset and bucket count would overflow.
+	 * 
+	 * @param offset
+	 * @param span
+	 * @param buckets
+	 * @return
+	 */
+	protected static int getBucket(long offset, long span, int buckets) {
+		if (offset <= Long.MAX_VALUE / buckets) {
+			return (int) ((offset * buckets) / span);
+		}
+		return (int) Math.min(buckets - 1, (long) (((double) offset / span) * buckets));
+	}
+
 	/**
 	 * Add a new measurement entry. Create a new series if one does not already exist.
 	 * 
@@ -75,4 +161,107 @@ public class ChartBuilder {
 		seriesEntry.setMeasurementDate(date);
 		series.getEntries().add(seriesEntry);
 	}
+
+	/**
+	 * Holds the lowest and highest value seen in each time bucket for one measurement.
+	 * Only the highest value is emitted when a single point per bucket is wanted.
+	 * 
+	 * @author Derek
+	 */
+	private static class MinMaxBuckets {
+
+		/** Indicates which buckets have values */
+		private boolean[] used;
+
+		/** Time of lowest value in each bucket */
+		private long[] minTimes;
+
+		/** Lowest value in each bucket */
+		private double[] minValues;
+
+		/** Time of highest value in each bucket */
+		private long[] maxTimes;
+
+		/** Highest value in each bucket */
+		private double[] maxValues;
+
+		/** Indicates whether only the highest value is emitted for each bucket */
+		private boolean maxOnly;
+
+		public MinMaxBuckets(int buckets, boolean maxOnly) {
+			this.maxOnly = maxOnly;
+			this.used = new boolean[buckets];
+			this.minTimes = new long[buckets];
+			this.minValues = new double[buckets];
+			this.maxTimes = new long[buckets];
+			this.maxValues = new double[buckets];
+		}
+
+		/**
+		 * Add a value to a bucket. The first of several equal values is kept.
+		 * 
+		 * @param bucket
+		 * @param time
+		 * @param value
+		 */
+		public void add(int bucket, long time, double value) {
+			if (!used[bucket]) {
+				used[bucket] = true;
+				minTimes[bucket] = maxTimes[bucket] = time;
+				minValues[bucket] = maxValues[bucket] = value;
+				return;
+			}
+			if (value < minValues[bucket]) {
+				minTimes[bucket] = time;
+				minValues[bucket] = value;
+			}
+			if (value > maxValues[bucket]) {
+				maxTimes[bucket] = time;
+				maxValues[bucket] = value;
+			}
+		}
+
+		/**
+		 * Create a series with entries in date order.
+		 * 
+		 * @param key
+		 * @return
+		 */
+		public ChartSeries<Double> toSeries(String key) {
+			ChartSeries<Double> series = new ChartSeries<Double>();
+			series.setMeasurementId(key);
+			for (int i = 0; i < used.length; i++) {
+				if (!used[i]) {
+					continue;
+				}
+				boolean single = (minTimes[i] == maxTimes[i]) && (minValues[i] == maxValues[i]);
+				if (maxOnly) {
+					series.getEntries().add(createEntry(maxTimes[i], maxValues[i]));
+				} else if (single) {
+					series.getEntries().add(createEntry(minTimes[i], minValues[i]));
+				} else if (minTimes[i] <= maxTimes[i]) {
+					series.getEntries().add(createEntry(minTimes[i], minValues[i]));
+					series.getEntries().add(createEntry(maxTimes[i], maxValues[i]));
+				} else {
+					series.getEntries().add(createEntry(maxTimes[i], maxValues[i]));
+					series.getEntries().add(createEntry(minTimes[i], minValues[i]));
+				}
+			}
+			return series;
+		}
+
+		/**
+		 * Create a single chart entry.
+		 * 
+		 * @param time
+		 * @param value
+		 * @return
+		 */
+		protected ChartEntry<Double> createEntry(long time, double value) {
+			ChartEntry<Double> entry = new ChartEntry<Double>();
+			entry.setMeasurementDate(new Date(time));
+			entry.setValue(value);
+			return entry;
+		}
+	}
 }
\ No newline at end of file
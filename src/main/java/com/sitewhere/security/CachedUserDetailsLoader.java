@@ -0,0 +1,109 @@
+/*
+ * CachedUserDetailsLoader.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.server.cache.LruTtlCache;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.user.IUser;
+import com.sitewhere.spi.user.IUserManagement;
+
+/**
+ * Loads {@link SitewhereUserDetails} with a single user management call and caches the
+ * result. Authorities are taken from the names stored on the user and resolved to
+ * interned {@link SitewhereGrantedAuthority} sets. The cache is cleared whenever users or
+ * authorities change.
+ * 
+ * @author Derek
+ */
+public class CachedUserDetailsLoader implements IUserChangeListener {
+
+	/** Default maximum number of cached users */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/** Default time (in ms) user details stay cached */
+	public static final long DEFAULT_TTL_MS = 60 * 1000;
+
+	/** User management implementation */
+	private final IUserManagement userManagement;
+
+	/** User details by username */
+	private final LruTtlCache<String, SitewhereUserDetails> cache;
+
+	/** Incremented on every invalidation */
+	private long generation;
+
+	public CachedUserDetailsLoader(IUserManagement userManagement, int maxSize, long ttlMs,
+			MetricRegistry registry) {
+		this.userManagement = userManagement;
+		this.cache =
+				new LruTtlCache<String, SitewhereUserDetails>(MetricRegistry.name(
+						SitewhereUserDetailsService.class, "userDetailsCache"), maxSize, ttlMs, registry);
+	}
+
+	/**
+	 * Load details for a user.
+	 * 
+	 * @param username
+	 * @return the details or null if the user does not exist
+	 * @throws SiteWhereException
+	 */
+	public SitewhereUserDetails loadUserDetails(String username) throws SiteWhereException {
+		SitewhereUserDetails details = cache.get(username);
+		if (details != null) {
+			return details;
+		}
+		long loadedGeneration = getGeneration();
+		IUser user = userManagement.getUserByUsername(username);
+		if (user == null) {
+			return null;
+		}
+		details = new SitewhereUserDetails(user);
+		synchronized (this) {
+			if (loadedGeneration == generation) {
+				cache.put(username, details);
+			}
+		}
+		return details;
+	}
+
+	/**
+	 * Check whether a user exists without resolving authorities.
+	 * 
+	 * @param username
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public boolean userExists(String username) throws SiteWhereException {
+		if (cache.get(username) != null) {
+			return true;
+		}
+		return (userManagement.getUserByUsername(username) != null);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.security.IUserChangeListener#usersChanged()
+	 */
+	public synchronized void usersChanged() {
+		generation++;
+		cache.clear();
+	}
+
+	/**
+	 * Get the current generation.
+	 * 
+	 * @return
+	 */
+	protected synchronized long getGeneration() {
+		return generation;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * CredentialCache.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+
+import javax.xml.bind.DatatypeConverter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.sitewhere.server.cache.LruTtlCache;
+
+/**
+ * Caches user details for recently verified credentials so repeated basic auth requests
+ * do not hit the user store. Entries are keyed by a SHA-256 digest of the username and
+ * password with a random salt generated at startup, so plaintext passwords are never
+ * held. Any change to users or authorities invalidates the whole cache. A generation
+ * counter keeps a lookup that started before an invalidation from caching stale details.
+ * 
+ * @author Derek
+ */
+public class CredentialCache implements IUserChangeListener {
+
+	/** Default maximum number of cached credentials */
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	/** Default time (in ms) verified credentials stay cached */
+	public static final long DEFAULT_TTL_MS = 5 * 60 * 1000;
+
+	/** Salt mixed into every key */
+	private final byte[] salt = new byte[16];
+
+	/** User details by credential digest */
+	private final LruTtlCache<String, SitewhereUserDetails> cache;
+
+	/** Incremented on every invalidation */
+	private long generation;
+
+	public CredentialCache(int maxSize, long ttlMs, MetricRegistry registry) {
+		new SecureRandom().nextBytes(salt);
+		String name = MetricRegistry.name(SitewhereAuthenticationProvider.class, "credentialCache");
+		this.cache = new LruTtlCache<String, SitewhereUserDetails>(name, maxSize, ttlMs, registry);
+		final Counter hits = registry.counter(MetricRegistry.name(name, "hits"));
+		final Counter misses = registry.counter(MetricRegistry.name(name, "misses"));
+		String hitRatio = MetricRegistry.name(name, "hitRatio");
+		registry.remove(hitRatio);
+		registry.register(hitRatio, new RatioGauge() {
+
+			protected Ratio getRatio() {
+				return Ratio.of(hits.getCount(), hits.getCount() + misses.getCount());
+			}
+		});
+	}
+
+	/**
+	 * Get the current generation. Capture it before loading details that will be cached.
+	 * 
+	 * @return
+	 */
+	public synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Get cached details for a username and password or null if not cached.
+	 * 
+	 * @param username
+	 * @param password
+	 * @return
+	 */
+	public SitewhereUserDetails get(String username, String password) {
+		return cache.get(digest(username, password));
+	}
+
+	/**
+	 * Cache details for verified credentials unless the cache was invalidated after the
+	 * given generation.
+	 * 
+	 * @param username
+	 * @param password
+	 * @param details
+	 * @param loadedGeneration
+	 */
+	public synchronized void put(String username, String password, SitewhereUserDetails details,
+			long loadedGeneration) {
+		if (loadedGeneration == generation) {
+			cache.put(digest(username, password), details);
+		}
+	}
+
+	/**
+	 * Remove all cached credentials.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		cache.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.security.IUserChangeListener#usersChanged()
+	 */
+	public void usersChanged() {
+		invalidateAll();
+	}
+
+	/**
+	 * Compute the salted digest used as a cache key.
+	 * 
+	 * @param username
+	 * @param password
+	 * @return
+	 */
+	protected String digest(String username, String password) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			digest.update(String.valueOf(username).getBytes("UTF-8"));
+			digest.update((byte) 0);
+			digest.update(String.valueOf(password).getBytes("UTF-8"));
+			return DatatypeConverter.printBase64Binary(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available.", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not available.", e);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * CredentialCacheInvalidator.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.sitewhere.spi.user.IUserManagement;
+
+/**
+ * Wraps user management in a dynamic proxy that notifies listeners such as the
+ * {@link CredentialCache} after any call that may change users or granted authorities.
+ * 
+ * @author Derek
+ */
+public class CredentialCacheInvalidator implements InvocationHandler {
+
+	/** Prefixes of user management methods that change data */
+	private static final String[] MUTATOR_PREFIXES = { "create", "update", "delete", "add", "remove" };
+
+	/** Wrapped implementation */
+	private final IUserManagement delegate;
+
+	/** Listeners notified of changes */
+	private final IUserChangeListener[] listeners;
+
+	protected CredentialCacheInvalidator(IUserManagement delegate, IUserChangeListener[] listeners) {
+		this.delegate = delegate;
+		this.listeners = listeners;
+	}
+
+	/**
+	 * Wrap user management so that changes are passed to the given listeners.
+	 * 
+	 * @param delegate
+	 * @param listeners
+	 * @return
+	 */
+	public static IUserManagement wrap(IUserManagement delegate, IUserChangeListener... listeners) {
+		return (IUserManagement) Proxy.newProxyInstance(IUserManagement.class.getClassLoader(),
+				new Class<?>[] { IUserManagement.class }, new CredentialCacheInvalidator(delegate, listeners));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		boolean mutator = isMutator(method);
+		try {
+			return method.invoke(delegate, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			if (mutator) {
+				for (IUserChangeListener listener : listeners) {
+					listener.usersChanged();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indicates if a method may change users or authorities.
+	 * 
+	 * @param method
+	 * @return
+	 */
+	protected boolean isMutator(Method method) {
+		if (method.getDeclaringClass() == Object.class) {
+			return false;
+		}
+		for (String prefix : MUTATOR_PREFIXES) {
+			if (method.getName().startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,23 @@
+/*
+ * IUserChangeListener.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+/**
+ * Notified after user management calls that may change users or granted authorities.
+ * 
+ * @author Derek
+ */
+public interface IUserChangeListener {
+
+	/**
+	 * Called after users or granted authorities may have changed.
+	 */
+	public void usersChanged();
+}
@@ -0,0 +1,117 @@
+/*
+ * SessionTokenFilter.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Servlet filter that authenticates requests carrying a session token issued by
+ * {@link SessionTokenService} and issues a token after a successful basic auth login. The
+ * token is sent and returned in the {@link #TOKEN_HEADER} header. Register it in the
+ * Spring Security filter chain right after basic authentication:
+ * 
+ * <pre>
+ * &lt;custom-filter after="BASIC_AUTH_FILTER" ref="sessionTokenFilter"/&gt;
+ * </pre>
+ * 
+ * A request with a token that is invalid or expired is rejected with a 401 unless it was
+ * also authenticated with basic auth, in which case a new token is issued.
+ * 
+ * @author Derek
+ */
+public class SessionTokenFilter implements Filter {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(SessionTokenFilter.class);
+
+	/** Header used to send and return session tokens */
+	public static final String TOKEN_HEADER = "X-SiteWhere-Token";
+
+	/** Header carrying basic auth credentials */
+	private static final String AUTHORIZATION_HEADER = "Authorization";
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
+	 */
+	public void init(FilterConfig config) throws ServletException {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.Filter#doFilter(javax.servlet.ServletRequest,
+	 * javax.servlet.ServletResponse, javax.servlet.FilterChain)
+	 */
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException,
+			ServletException {
+		HttpServletRequest request = (HttpServletRequest) req;
+		HttpServletResponse response = (HttpServletResponse) res;
+		SessionTokenService tokens = SiteWhereServer.getInstance().getSessionTokenService();
+		if (tokens == null) {
+			chain.doFilter(req, res);
+			return;
+		}
+		MetricRegistry registry = SiteWhereServer.getInstance().getMetricRegistry();
+		Authentication current = SecurityContextHolder.getContext().getAuthentication();
+		String token = request.getHeader(TOKEN_HEADER);
+		if (token != null) {
+			SitewhereAuthentication fromToken = tokens.validate(token);
+			if (fromToken != null) {
+				registry.meter(MetricRegistry.name(SessionTokenFilter.class, "accepted")).mark();
+				if (!(current instanceof SitewhereAuthentication)) {
+					SecurityContextHolder.getContext().setAuthentication(fromToken);
+				}
+				chain.doFilter(req, res);
+				return;
+			}
+			registry.meter(MetricRegistry.name(SessionTokenFilter.class, "rejected")).mark();
+			if (!(current instanceof SitewhereAuthentication)) {
+				response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired session token.");
+				return;
+			}
+		}
+		if ((current instanceof SitewhereAuthentication) && (request.getHeader(AUTHORIZATION_HEADER) != null)) {
+			try {
+				response.setHeader(TOKEN_HEADER, tokens.issue((SitewhereUserDetails) current.getDetails()));
+				registry.meter(MetricRegistry.name(SessionTokenFilter.class, "issued")).mark();
+			} catch (SiteWhereException e) {
+				LOGGER.warn("Unable to issue session token.", e);
+			}
+		}
+		chain.doFilter(req, res);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.Filter#destroy()
+	 */
+	public void destroy() {
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * SessionTokenService.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.security;
+
+import java.io.UnsupportedEncodingException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.bind.DatatypeConverter;
+
+import org.apache.log4j.Logger;
+import org.springframework.security.core.GrantedAuthority;
+
+import com.sitewhere.rest.model.user.User;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.user.AccountStatus;
+import com.sitewhere.spi.user.IGrantedAuthority;
+
+/**
+ * Issues and validates HMAC-signed session tokens that carry a username, its granted
+ * authorities and an expiration time. Tokens are validated in memory without calls to
+ * user management. Tokens issued before a change to users or authorities are rejected so
+ * that clients pick up the change on their next login. Unless a secret is configured, a
+ * random one is generated at startup, so tokens do not survive a restart and are only
+ * valid on the server that issued them.
+ * 
+ * @author Derek
+ */
+public class SessionTokenService implements IUserChangeListener {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(SessionTokenService.class);
+
+	/** Default time (in ms) a token stays valid */
+	public static final long DEFAULT_TTL_MS = 30 * 60 * 1000;
+
+	/** HMAC algorithm used to sign tokens */
+	private static final String ALGORITHM = "HmacSHA256";
+
+	/** Separates fields in the token payload */
+	private static final char FIELD_SEPARATOR = '\n';
+
+	/** Separates authorities in the token payload */
+	private static final char AUTHORITY_SEPARATOR = ',';
+
+	/** Key used to sign tokens */
+	private SecretKeySpec key;
+
+	/** Time (in ms) a token stays valid */
+	private long ttlMs = DEFAULT_TTL_MS;
+
+	/** Tokens issued before this time are rejected */
+	private volatile long revokedBefore;
+
+	public SessionTokenService() {
+		byte[] secret = new byte[32];
+		new SecureRandom().nextBytes(secret);
+		this.key = new SecretKeySpec(secret, ALGORITHM);
+	}
+
+	/**
+	 * Issue a token for an authenticated user.
+	 * 
+	 * @param details
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public String issue(SitewhereUserDetails details) throws SiteWhereException {
+		long now = System.currentTimeMillis();
+		StringBuilder payload = new StringBuilder();
+		payload.append(details.getUsername()).append(FIELD_SEPARATOR);
+		payload.append(now).append(FIELD_SEPARATOR);
+		payload.append(now + ttlMs).append(FIELD_SEPARATOR);
+		boolean first = true;
+		for (GrantedAuthority authority : details.getAuthorities()) {
+			if (!first) {
+				payload.append(AUTHORITY_SEPARATOR);
+			}
+			String name = authority.getAuthority();
+			if (name.startsWith(SitewhereGrantedAuthority.ROLE_VOTER_PREFIX)) {
+				name = name.substring(SitewhereGrantedAuthority.ROLE_VOTER_PREFIX.length());
+			}
+			payload.append(name);
+			first = false;
+		}
+		byte[] bytes = toBytes(payload.toString());
+		return DatatypeConverter.printBase64Binary(bytes) + "."
+				+ DatatypeConverter.printBase64Binary(sign(bytes));
+	}
+
+	/**
+	 * Validate a token and rebuild the authentication it represents.
+	 * 
+	 * @param token
+	 * @return the authentication or null if the token is not valid
+	 */
+	public SitewhereAuthentication validate(String token) {
+		try {
+			int dot = token.indexOf('.');
+			if (dot < 0) {
+				return null;
+			}
+			byte[] payload = DatatypeConverter.parseBase64Binary(token.substring(0, dot));
+			byte[] signature = DatatypeConverter.parseBase64Binary(token.substring(dot + 1));
+			if (!MessageDigest.isEqual(signature, sign(payload))) {
+				return null;
+			}
+			String[] fields = new String(payload, "UTF-8").split(String.valueOf(FIELD_SEPARATOR), -1);
+			if (fields.length != 4) {
+				return null;
+			}
+			long issued = Long.parseLong(fields[1]);
+			long expires = Long.parseLong(fields[2]);
+			if ((issued < revokedBefore) || (System.currentTimeMillis() > expires)) {
+				return null;
+			}
+			User user = new User();
+			user.setUsername(fields[0]);
+			user.setStatus(AccountStatus.Active);
+			List<String> names = new ArrayList<String>();
+			List<IGrantedAuthority> auths = new ArrayList<IGrantedAuthority>();
+			if (fields[3].length() > 0) {
+				for (String name : fields[3].split(String.valueOf(AUTHORITY_SEPARATOR))) {
+					com.sitewhere.rest.model.user.GrantedAuthority auth =
+							new com.sitewhere.rest.model.user.GrantedAuthority();
+					auth.setAuthority(name);
+					auths.add(auth);
+					names.add(name);
+				}
+			}
+			user.setAuthorities(names);
+			return new SitewhereAuthentication(new SitewhereUserDetails(user, auths), null);
+		} catch (IllegalArgumentException e) {
+			LOGGER.debug("Invalid session token.", e);
+			return null;
+		} catch (UnsupportedEncodingException e) {
+			return null;
+		} catch (SiteWhereException e) {
+			LOGGER.debug("Unable to rebuild authentication from session token.", e);
+			return null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.security.IUserChangeListener#usersChanged()
+	 */
+	public void usersChanged() {
+		revokedBefore = System.currentTimeMillis();
+	}
+
+	/**
+	 * Compute the signature for a payload.
+	 * 
+	 * @param payload
+	 * @return
+	 */
+	protected byte[] sign(byte[] payload) {
+		try {
+			Mac mac = Mac.getInstance(ALGORITHM);
+			mac.init(key);
+			return mac.doFinal(payload);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to sign session token.", e);
+		}
+	}
+
+	/**
+	 * Encode a string as UTF-8.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	protected byte[] toBytes(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not available.", e);
+		}
+	}
+
+	/**
+	 * Set the secret used to sign tokens as a Base64 string. Servers that share a secret
+	 * accept each other's tokens.
+	 * 
+	 * @param secret
+	 */
+	public void setSecret(String secret) {
+		this.key = new SecretKeySpec(DatatypeConverter.parseBase64Binary(secret), ALGORITHM);
+	}
+
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	public void setTtlMs(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+}
@@ -10,8 +10,6 @@
 
 package com.sitewhere.security;
 
-import java.util.List;
-
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -19,9 +17,10 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.spi.SiteWhereException;
-import com.sitewhere.spi.user.IGrantedAuthority;
 import com.sitewhere.spi.user.IUser;
 
 /**
@@ -38,15 +37,20 @@ public class SitewhereAuthenticationProvider implements AuthenticationProvider {
 	 * springframework.security. Authentication)
 	 */
 	public Authentication authenticate(Authentication input) throws AuthenticationException {
+		Timer.Context timer = getAuthenticationTimer().time();
 		try {
 			if (input instanceof UsernamePasswordAuthenticationToken) {
 				String username = (String) input.getPrincipal();
 				String password = (String) input.getCredentials();
-				IUser user = SiteWhereServer.getInstance().getUserManagement()
-						.authenticate(username, password);
-				List<IGrantedAuthority> auths = SiteWhereServer.getInstance().getUserManagement()
-						.getGrantedAuthorities(user.getUsername());
-				SitewhereUserDetails details = new SitewhereUserDetails(user, auths);
+				CredentialCache cache = SiteWhereServer.getInstance().getCredentialCache();
+				SitewhereUserDetails details = (cache != null) ? cache.get(username, password) : null;
+				if (details == null) {
+					long generation = (cache != null) ? cache.getGeneration() : 0;
+					details = loadUserDetails(username, password);
+					if (cache != null) {
+						cache.put(username, password, details, generation);
+					}
+				}
 				return new SitewhereAuthentication(details, password);
 			} else if (input instanceof SitewhereAuthentication) {
 				return input;
@@ -56,9 +60,34 @@ public class SitewhereAuthenticationProvider implements AuthenticationProvider {
 			}
 		} catch (SiteWhereException e) {
 			throw new BadCredentialsException("Unable to authenticate.", e);
+		} finally {
+			timer.stop();
 		}
 	}
 
+	/**
+	 * Get the timer for authentication requests.
+	 * 
+	 * @return
+	 */
+	protected Timer getAuthenticationTimer() {
+		return SiteWhereServer.getInstance().getMetricRegistry().timer(
+				MetricRegistry.name(SitewhereAuthenticationProvider.class, "authenticate"));
+	}
+
+	/**
+	 * Verify credentials against user management and load the user details.
+	 * 
+	 * @param username
+	 * @param password
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	protected SitewhereUserDetails loadUserDetails(String username, String password) throws SiteWhereException {
+		IUser user = SiteWhereServer.getInstance().getUserManagement().authenticate(username, password);
+		return new SitewhereUserDetails(user);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
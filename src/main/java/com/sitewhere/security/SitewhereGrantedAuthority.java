@@ -10,6 +10,13 @@
 
 package com.sitewhere.security;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.springframework.security.core.GrantedAuthority;
 
 import com.sitewhere.spi.user.IGrantedAuthority;
@@ -27,11 +34,68 @@ public class SitewhereGrantedAuthority implements GrantedAuthority {
 	/** Prefix Spring Security expects for role authorities */
 	public static final String ROLE_VOTER_PREFIX = "ROLE_";
 
+	/** Interned authorities by authority name */
+	private static final ConcurrentMap<String, SitewhereGrantedAuthority> AUTHORITIES =
+			new ConcurrentHashMap<String, SitewhereGrantedAuthority>();
+
+	/** Interned immutable authority collections by list of authority names */
+	private static final ConcurrentMap<List<String>, Collection<GrantedAuthority>> AUTHORITY_SETS =
+			new ConcurrentHashMap<List<String>, Collection<GrantedAuthority>>();
+
 	/** Authority */
 	private String authority;
 
 	public SitewhereGrantedAuthority(IGrantedAuthority auth) {
-		this.authority = ROLE_VOTER_PREFIX + auth.getAuthority();
+		this(auth.getAuthority());
+	}
+
+	protected SitewhereGrantedAuthority(String name) {
+		this.authority = ROLE_VOTER_PREFIX + name;
+	}
+
+	/**
+	 * Get the shared instance for an authority name.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public static SitewhereGrantedAuthority intern(String name) {
+		SitewhereGrantedAuthority existing = AUTHORITIES.get(name);
+		if (existing == null) {
+			SitewhereGrantedAuthority created = new SitewhereGrantedAuthority(name);
+			existing = AUTHORITIES.putIfAbsent(name, created);
+			if (existing == null) {
+				existing = created;
+			}
+		}
+		return existing;
+	}
+
+	/**
+	 * Get the shared immutable collection of authorities for a list of authority names.
+	 * Users with the same authorities share one collection.
+	 * 
+	 * @param names
+	 * @return
+	 */
+	public static Collection<GrantedAuthority> internAll(List<String> names) {
+		if (names == null) {
+			names = Collections.emptyList();
+		}
+		Collection<GrantedAuthority> existing = AUTHORITY_SETS.get(names);
+		if (existing == null) {
+			List<String> key = Collections.unmodifiableList(new ArrayList<String>(names));
+			List<GrantedAuthority> authorities = new ArrayList<GrantedAuthority>(key.size());
+			for (String name : key) {
+				authorities.add(intern(name));
+			}
+			Collection<GrantedAuthority> created = Collections.unmodifiableList(authorities);
+			existing = AUTHORITY_SETS.putIfAbsent(key, created);
+			if (existing == null) {
+				existing = created;
+			}
+		}
+		return existing;
 	}
 
 	/*
@@ -43,6 +107,27 @@ public class SitewhereGrantedAuthority implements GrantedAuthority {
 		return authority;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	public boolean equals(Object o) {
+		if (o instanceof SitewhereGrantedAuthority) {
+			return authority.equals(((SitewhereGrantedAuthority) o).getAuthority());
+		}
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode() {
+		return authority.hashCode();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -44,18 +44,28 @@ public class SitewhereUserDetails implements UserDetails {
 	}
 
 	/**
-	 * Get and convert the granted authorities.
+	 * Create details using the authority names stored on the user.
 	 * 
-	 * @param userManagement
 	 * @param user
+	 * @throws SiteWhereException
+	 */
+	public SitewhereUserDetails(IUser user) throws SiteWhereException {
+		this.user = user;
+		this.grantedAuthorities = SitewhereGrantedAuthority.internAll(user.getAuthorities());
+	}
+
+	/**
+	 * Convert the granted authorities to the shared Spring Security representation.
+	 * 
+	 * @param authorities
 	 * @return
 	 */
 	protected Collection<GrantedAuthority> convertAuthorities(List<IGrantedAuthority> authorities) {
-		List<GrantedAuthority> results = new ArrayList<GrantedAuthority>();
+		List<String> names = new ArrayList<String>(authorities.size());
 		for (IGrantedAuthority auth : authorities) {
-			results.add(new SitewhereGrantedAuthority(auth));
+			names.add(auth.getAuthority());
 		}
-		return results;
+		return SitewhereGrantedAuthority.internAll(names);
 	}
 
 	/*
@@ -10,8 +10,6 @@
 
 package com.sitewhere.security;
 
-import java.util.List;
-
 import org.springframework.dao.DataAccessException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -19,8 +17,6 @@ import org.springframework.security.provisioning.UserDetailsManager;
 
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.spi.SiteWhereException;
-import com.sitewhere.spi.user.IGrantedAuthority;
-import com.sitewhere.spi.user.IUser;
 
 /**
  * SiteWhere implementation of Spring security UserDetailsManager.
@@ -37,10 +33,12 @@ public class SitewhereUserDetailsService implements UserDetailsManager {
 	public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException,
 			DataAccessException {
 		try {
-			IUser user = SiteWhereServer.getInstance().getUserManagement().getUserByUsername(username);
-			List<IGrantedAuthority> auths = SiteWhereServer.getInstance().getUserManagement()
-					.getGrantedAuthorities(username);
-			return new SitewhereUserDetails(user, auths);
+			SitewhereUserDetails details =
+					SiteWhereServer.getInstance().getUserDetailsLoader().loadUserDetails(username);
+			if (details == null) {
+				throw new UsernameNotFoundException("User not found: " + username);
+			}
+			return details;
 		} catch (SiteWhereException e) {
 			throw new UsernameNotFoundException("Unable to load user by username.", e);
 		}
@@ -82,7 +80,11 @@ public class SitewhereUserDetailsService implements UserDetailsManager {
 	 * @see org.springframework.security.userdetails.UserDetailsManager#userExists(java.lang.String)
 	 */
 	public boolean userExists(String username) {
-		return (loadUserByUsername(username) != null);
+		try {
+			return SiteWhereServer.getInstance().getUserDetailsLoader().userExists(username);
+		} catch (SiteWhereException e) {
+			throw new RuntimeException("Unable to check whether user exists.", e);
+		}
 	}
 
 	/*
@@ -14,9 +14,13 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.apache.log4j.Logger;
 import org.mule.util.StringMessageUtils;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
@@ -26,15 +30,26 @@ import org.springframework.context.support.GenericApplicationContext;
 import org.springframework.core.io.FileSystemResource;
 
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistry;
 import com.sitewhere.rest.model.search.SearchCriteria;
 import com.sitewhere.rest.model.user.User;
 import com.sitewhere.rest.model.user.UserSearchCriteria;
+import com.sitewhere.security.CredentialCache;
+import com.sitewhere.security.CachedUserDetailsLoader;
+import com.sitewhere.security.CredentialCacheInvalidator;
+import com.sitewhere.security.SessionTokenService;
 import com.sitewhere.security.SitewhereAuthentication;
 import com.sitewhere.security.SitewhereUserDetails;
-import com.sitewhere.server.metrics.DeviceManagementMetricsFacade;
+import com.sitewhere.server.health.AssetModulesHealthCheck;
+import com.sitewhere.server.health.DatastoreHealthCheck;
+import com.sitewhere.server.health.ScheduledHealthChecks;
+import com.sitewhere.server.health.UserStoreHealthCheck;
+import com.sitewhere.server.metrics.MetricsFacade;
+import com.sitewhere.server.metrics.SlowCallLog;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.IAssetModuleManager;
+import com.sitewhere.spi.device.DeviceManagementAdapter;
 import com.sitewhere.spi.device.IDeviceManagement;
 import com.sitewhere.spi.device.ISite;
 import com.sitewhere.spi.search.ISearchResults;
@@ -56,6 +71,22 @@ public class SiteWhereServer {
 	/** Private logger instance */
 	private static Logger LOGGER = Logger.getLogger(SiteWhereServer.class);
 
+	/** Default time (in ms) each concurrent startup phase may take */
+	public static final long DEFAULT_STARTUP_PHASE_TIMEOUT_MS = 5 * 60 * 1000;
+
+	/** Default number of site and assignment tokens with their own timers */
+	public static final int DEFAULT_METRICS_TRACKED_TOKENS = 100;
+
+	/** Name the device management slow call log is registered under in JMX */
+	public static final String SLOW_CALL_LOG_MBEAN_NAME =
+			"com.sitewhere:type=SlowCallLog,name=IDeviceManagement";
+
+	/** Default interval (in ms) between runs of each health check */
+	public static final long DEFAULT_HEALTH_CHECK_INTERVAL_MS = 10 * 1000;
+
+	/** Default time (in ms) a health check may take before it is reported as unhealthy */
+	public static final long DEFAULT_HEALTH_CHECK_MAX_LATENCY_MS = 1000;
+
 	/** Singleton server instance */
 	private static SiteWhereServer SINGLETON;
 
@@ -80,6 +111,60 @@ public class SiteWhereServer {
 	/** Health check registry */
 	private HealthCheckRegistry healthCheckRegistry = new HealthCheckRegistry();
 
+	/** Cache of recently verified credentials */
+	private CredentialCache credentialCache;
+
+	/** Issues and validates session tokens */
+	private SessionTokenService sessionTokenService;
+
+	/** Loads and caches user details */
+	private CachedUserDetailsLoader userDetailsLoader;
+
+	/** Time (in ms) each concurrent startup phase may take */
+	private long startupPhaseTimeoutMs = DEFAULT_STARTUP_PHASE_TIMEOUT_MS;
+
+	/** Number of site and assignment tokens with their own timers */
+	private int metricsTrackedTokens = DEFAULT_METRICS_TRACKED_TOKENS;
+
+	/** Minimum duration (in ms) of a device management call kept in the slow call log */
+	private long slowCallThresholdMs = SlowCallLog.DEFAULT_THRESHOLD_MS;
+
+	/** Number of calls kept in the slow call log */
+	private int slowCallCapacity = SlowCallLog.DEFAULT_CAPACITY;
+
+	/** Slow device management calls */
+	private SlowCallLog slowCallLog;
+
+	/** Interval (in ms) between runs of each health check */
+	private long healthCheckIntervalMs = DEFAULT_HEALTH_CHECK_INTERVAL_MS;
+
+	/** Time (in ms) a health check may take before it is reported as unhealthy */
+	private long healthCheckMaxLatencyMs = DEFAULT_HEALTH_CHECK_MAX_LATENCY_MS;
+
+	/** Runs health checks on a schedule */
+	private ScheduledHealthChecks healthChecks;
+
+	/** Indicates the server has been created and started */
+	private volatile boolean ready;
+
+	/** Error that stopped startup or null if none */
+	private volatile Throwable startupFailure;
+
+	public SiteWhereServer() {
+		healthCheckRegistry.register(MetricRegistry.name(SiteWhereServer.class, "readiness"), new HealthCheck() {
+
+			protected Result check() throws Exception {
+				if (ready) {
+					return Result.healthy("Server started.");
+				}
+				if (startupFailure != null) {
+					return Result.unhealthy(startupFailure);
+				}
+				return Result.unhealthy("Server is starting.");
+			}
+		});
+	}
+
 	/**
 	 * Get the singleton server instance.
 	 * 
@@ -146,6 +231,60 @@ public class SiteWhereServer {
 		return healthCheckRegistry;
 	}
 
+	/**
+	 * Get the cache of recently verified credentials.
+	 * 
+	 * @return
+	 */
+	public CredentialCache getCredentialCache() {
+		return credentialCache;
+	}
+
+	/**
+	 * Get the service that issues and validates session tokens.
+	 * 
+	 * @return
+	 */
+	public SessionTokenService getSessionTokenService() {
+		return sessionTokenService;
+	}
+
+	/**
+	 * Get the loader used to build user details.
+	 * 
+	 * @return
+	 */
+	public CachedUserDetailsLoader getUserDetailsLoader() {
+		return userDetailsLoader;
+	}
+
+	/**
+	 * Indicates whether the server has been created and started and can handle requests.
+	 * 
+	 * @return
+	 */
+	public boolean isReady() {
+		return ready;
+	}
+
+	/**
+	 * Get the error that stopped startup.
+	 * 
+	 * @return the error or null if startup has not failed
+	 */
+	public Throwable getStartupFailure() {
+		return startupFailure;
+	}
+
+	/**
+	 * Record an error that stopped startup so readiness checks can report it.
+	 * 
+	 * @param failure
+	 */
+	public void setStartupFailure(Throwable failure) {
+		this.startupFailure = failure;
+	}
+
 	/**
 	 * Gets the CATALINA/conf/sitewhere folder where configs are stored.
 	 * 
@@ -193,56 +332,181 @@ public class SiteWhereServer {
 	 */
 	public void create() throws SiteWhereException {
 		LOGGER.info("Initializing SiteWhere server components.");
-		File sitewhereConf = getSiteWhereConfigFolder();
-
-		// Load server configuration.
-		LOGGER.info("Loading Spring configuration ...");
-		File serverConfigFile = new File(sitewhereConf, SERVER_CONFIG_FILE_NAME);
-		if (!serverConfigFile.exists()) {
-			throw new SiteWhereException("SiteWhere server configuration not found: "
-					+ serverConfigFile.getAbsolutePath());
-		}
-		SERVER_SPRING_CONTEXT = loadServerApplicationContext(serverConfigFile);
+		final File sitewhereConf = getSiteWhereConfigFolder();
+		StartupPhaseRunner phases = new StartupPhaseRunner(metricRegistry);
+		boolean completed = false;
+		try {
+			// Load server configuration.
+			LOGGER.info("Loading Spring configuration ...");
+			final File serverConfigFile = new File(sitewhereConf, SERVER_CONFIG_FILE_NAME);
+			if (!serverConfigFile.exists()) {
+				throw new SiteWhereException("SiteWhere server configuration not found: "
+						+ serverConfigFile.getAbsolutePath());
+			}
+			phases.run(new StartupPhaseRunner.Phase("springContext") {
 
-		// Load device management and wrap it for metrics.
-		IDeviceManagement deviceManagementImpl =
-				(IDeviceManagement) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_DEVICE_MANAGEMENT);
-		if (deviceManagementImpl == null) {
-			throw new SiteWhereException("No device management implementation configured.");
-		}
-		DeviceManagementMetricsFacade facade = new DeviceManagementMetricsFacade();
-		facade.setDelegate(deviceManagementImpl);
-		deviceManagement = facade;
-		deviceManagement.start();
-
-		// Load user management.
-		userManagement =
-				(IUserManagement) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_USER_MANAGEMENT);
-		if (userManagement == null) {
-			throw new SiteWhereException("No user management implementation configured.");
+				public void run() throws SiteWhereException {
+					SERVER_SPRING_CONTEXT = loadServerApplicationContext(serverConfigFile);
+				}
+			});
+
+			// Load device management and wrap it for metrics.
+			IDeviceManagement deviceManagementImpl =
+					(IDeviceManagement) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_DEVICE_MANAGEMENT);
+			if (deviceManagementImpl == null) {
+				throw new SiteWhereException("No device management implementation configured.");
+			}
+			slowCallLog = new SlowCallLog(slowCallThresholdMs, slowCallCapacity);
+			registerMBean(slowCallLog, SLOW_CALL_LOG_MBEAN_NAME);
+			deviceManagement =
+					MetricsFacade.wrap(IDeviceManagement.class, deviceManagementImpl, metricRegistry,
+							metricsTrackedTokens, slowCallLog);
+
+			// Add optional wrappers configured in the server configuration. The cache sits
+			// inside the coalescer so deferred state writes invalidate it when they land.
+			deviceManagement = wrapDeviceManagement(deviceManagement,
+					SiteWhereServerBeans.BEAN_DEVICE_ASSIGNMENT_CACHE);
+			deviceManagement = wrapDeviceManagement(deviceManagement,
+					SiteWhereServerBeans.BEAN_ASSIGNMENT_STATE_COALESCER);
+			deviceManagement = wrapDeviceManagement(deviceManagement,
+					SiteWhereServerBeans.BEAN_DEVICE_EVENT_BATCHER);
+
+			// Load user management and wrap it for metrics.
+			IUserManagement userManagementImpl =
+					(IUserManagement) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_USER_MANAGEMENT);
+			if (userManagementImpl == null) {
+				throw new SiteWhereException("No user management implementation configured.");
+			}
+			userManagement = MetricsFacade.wrap(IUserManagement.class, userManagementImpl, metricRegistry);
+
+			// Cache verified credentials and drop them and issued tokens when users change.
+			credentialCache =
+					new CredentialCache(CredentialCache.DEFAULT_MAX_SIZE, CredentialCache.DEFAULT_TTL_MS,
+							metricRegistry);
+			if (SERVER_SPRING_CONTEXT.containsBean(SiteWhereServerBeans.BEAN_SESSION_TOKEN_SERVICE)) {
+				sessionTokenService =
+						(SessionTokenService) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_SESSION_TOKEN_SERVICE);
+			} else {
+				sessionTokenService = new SessionTokenService();
+			}
+			userDetailsLoader =
+					new CachedUserDetailsLoader(userManagement, CachedUserDetailsLoader.DEFAULT_MAX_SIZE,
+							CachedUserDetailsLoader.DEFAULT_TTL_MS, metricRegistry);
+			userManagement =
+					CredentialCacheInvalidator.wrap(userManagement, credentialCache, sessionTokenService,
+							userDetailsLoader);
+
+			// Load the asset module manager.
+			assetModuleManager =
+					(IAssetModuleManager) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_ASSET_MODULE_MANAGER);
+			if (assetModuleManager == null) {
+				throw new SiteWhereException("No asset module manager implementation configured.");
+			}
+
+			// Start independent components concurrently. Asset modules are optional.
+			phases.runConcurrently(new StartupPhaseRunner.Phase("deviceManagement", startupPhaseTimeoutMs, true) {
+
+				public void run() throws SiteWhereException {
+					deviceManagement.start();
+				}
+			}, new StartupPhaseRunner.Phase("userManagement", startupPhaseTimeoutMs, true) {
+
+				public void run() throws SiteWhereException {
+					userManagement.start();
+				}
+			}, new StartupPhaseRunner.Phase("assetModules", startupPhaseTimeoutMs, false) {
+
+				public void run() throws SiteWhereException {
+					assetModuleManager.start();
+				}
+			});
+
+			// Probe the unwrapped implementations so checks do not skew API metrics.
+			registerHealthChecks(deviceManagementImpl, userManagementImpl);
+
+			// Print version information.
+			IVersion version = VersionHelper.getVersion();
+			List<String> messages = new ArrayList<String>();
+			messages.add("SiteWhere Server");
+			messages.add("");
+			messages.add("Version: " + version.getVersionIdentifier() + "." + version.getBuildTimestamp());
+			messages.add("");
+			messages.add("Copyright (c) 2013 Reveal Technologies, LLC");
+			String message = StringMessageUtils.getBoilerPlate(messages, '*', 60);
+			LOGGER.info("\n" + message + "\n");
+
+			phases.run(new StartupPhaseRunner.Phase("verifyModels") {
+
+				public void run() throws SiteWhereException {
+					verifyUserModel();
+					verifyDeviceModel();
+				}
+			});
+			completed = true;
+		} finally {
+			phases.finish(completed);
 		}
-		userManagement.start();
+	}
 
-		// Load the asset module manager.
-		assetModuleManager =
-				(IAssetModuleManager) SERVER_SPRING_CONTEXT.getBean(SiteWhereServerBeans.BEAN_ASSET_MODULE_MANAGER);
-		if (assetModuleManager == null) {
-			throw new SiteWhereException("No asset module manager implementation configured.");
+	/**
+	 * Register a management bean with the platform MBean server, replacing any bean
+	 * already registered under the name. Failures are logged but do not stop startup.
+	 * 
+	 * @param bean
+	 * @param name
+	 */
+	protected void registerMBean(Object bean, String name) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName objectName = new ObjectName(name);
+			if (server.isRegistered(objectName)) {
+				server.unregisterMBean(objectName);
+			}
+			server.registerMBean(bean, objectName);
+		} catch (Exception e) {
+			LOGGER.warn("Unable to register management bean: " + name, e);
 		}
+	}
 
-		// Print version information.
-		IVersion version = VersionHelper.getVersion();
-		List<String> messages = new ArrayList<String>();
-		messages.add("SiteWhere Server");
-		messages.add("");
-		messages.add("Version: " + version.getVersionIdentifier() + "." + version.getBuildTimestamp());
-		messages.add("");
-		messages.add("Copyright (c) 2013 Reveal Technologies, LLC");
-		String message = StringMessageUtils.getBoilerPlate(messages, '*', 60);
-		LOGGER.info("\n" + message + "\n");
+	/**
+	 * Register health checks for the datastore, user store and asset modules. Checks run
+	 * on a schedule and the registry serves their cached results.
+	 * 
+	 * @param deviceManagementImpl
+	 * @param userManagementImpl
+	 */
+	protected void registerHealthChecks(IDeviceManagement deviceManagementImpl,
+			IUserManagement userManagementImpl) {
+		if (healthChecks != null) {
+			healthChecks.stop();
+		}
+		healthChecks =
+				new ScheduledHealthChecks(healthCheckRegistry, metricRegistry, healthCheckIntervalMs,
+						healthCheckMaxLatencyMs);
+		healthChecks.register(MetricRegistry.name(SiteWhereServer.class, "health", "datastore"),
+				new DatastoreHealthCheck(deviceManagementImpl));
+		healthChecks.register(MetricRegistry.name(SiteWhereServer.class, "health", "userStore"),
+				new UserStoreHealthCheck(userManagementImpl));
+		healthChecks.register(MetricRegistry.name(SiteWhereServer.class, "health", "assetModules"),
+				new AssetModulesHealthCheck(assetModuleManager));
+	}
 
-		verifyUserModel();
-		verifyDeviceModel();
+	/**
+	 * Wraps device management with an optional facade if it is configured in the Spring
+	 * context. Otherwise the existing implementation is returned unchanged.
+	 * 
+	 * @param current
+	 * @param beanId
+	 * @return
+	 */
+	protected IDeviceManagement wrapDeviceManagement(IDeviceManagement current, String beanId) {
+		if (!SERVER_SPRING_CONTEXT.containsBean(beanId)) {
+			return current;
+		}
+		DeviceManagementAdapter wrapper = (DeviceManagementAdapter) SERVER_SPRING_CONTEXT.getBean(beanId);
+		wrapper.setDelegate(current);
+		LOGGER.info("Device management wrapped with " + wrapper.getClass().getName() + ".");
+		return wrapper;
 	}
 
 	/**
@@ -329,19 +593,106 @@ public class SiteWhereServer {
 	}
 
 	/**
-	 * Start the server.
+	 * Start the server. Components with a lifecycle are already started concurrently in
+	 * {@link #create()}, so this only marks the server ready for requests.
 	 */
 	public void start() throws SiteWhereException {
-		startServerComponents();
+		ready = true;
 	}
 
 	/**
-	 * Start the various server components that have a lifecycle.
+	 * Stop the server. Health checks are stopped first so they do not probe components
+	 * that are shutting down. Device management is stopped next so wrappers that buffer
+	 * writes can flush them to the datastore. A failure stopping one component is logged
+	 * and the remaining components are still stopped.
+	 */
+	public void stop() {
+		ready = false;
+		if (healthChecks != null) {
+			healthChecks.stop();
+			healthChecks = null;
+		}
+		if (deviceManagement != null) {
+			try {
+				LOGGER.info("Stopping device management.");
+				deviceManagement.stop();
+			} catch (Throwable t) {
+				LOGGER.error("Unable to stop device management.", t);
+			}
+		}
+		if (userManagement != null) {
+			try {
+				LOGGER.info("Stopping user management.");
+				userManagement.stop();
+			} catch (Throwable t) {
+				LOGGER.error("Unable to stop user management.", t);
+			}
+		}
+		if (assetModuleManager != null) {
+			try {
+				LOGGER.info("Stopping asset module manager.");
+				assetModuleManager.stop();
+			} catch (Throwable t) {
+				LOGGER.error("Unable to stop asset module manager.", t);
+			}
+		}
+	}
+
+	public long getStartupPhaseTimeoutMs() {
+		return startupPhaseTimeoutMs;
+	}
+
+	public void setStartupPhaseTimeoutMs(long startupPhaseTimeoutMs) {
+		this.startupPhaseTimeoutMs = startupPhaseTimeoutMs;
+	}
+
+	/**
+	 * Get the log of slow device management calls.
 	 * 
-	 * @throws SiteWhereException
+	 * @return
 	 */
-	protected void startServerComponents() throws SiteWhereException {
-		assetModuleManager.start();
+	public SlowCallLog getSlowCallLog() {
+		return slowCallLog;
+	}
+
+	public long getSlowCallThresholdMs() {
+		return slowCallThresholdMs;
+	}
+
+	public void setSlowCallThresholdMs(long slowCallThresholdMs) {
+		this.slowCallThresholdMs = slowCallThresholdMs;
+	}
+
+	public int getSlowCallCapacity() {
+		return slowCallCapacity;
+	}
+
+	public void setSlowCallCapacity(int slowCallCapacity) {
+		this.slowCallCapacity = slowCallCapacity;
+	}
+
+	public int getMetricsTrackedTokens() {
+		return metricsTrackedTokens;
+	}
+
+	public void setMetricsTrackedTokens(int metricsTrackedTokens) {
+		this.metricsTrackedTokens = metricsTrackedTokens;
+	}
+
+	public long getHealthCheckIntervalMs() {
+		return healthCheckIntervalMs;
+	}
+
+	public void setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+		this.healthCheckIntervalMs = healthCheckIntervalMs;
+	}
+
+	public long getHealthCheckMaxLatencyMs() {
+		return healthCheckMaxLatencyMs;
+	}
+
+	public void setHealthCheckMaxLatencyMs(long healthCheckMaxLatencyMs) {
+		this.healthCheckMaxLatencyMs = healthCheckMaxLatencyMs;
 	}
 
 	/**
@@ -30,6 +30,26 @@ public interface SiteWhereServerBeans {
 	/** Bean id for asset module manager in server configuration */
 	public static final String BEAN_ASSET_MODULE_MANAGER = "assetModuleManager";
 
+	/*****************************
+	 * DEVICE MANAGEMENT WRAPPERS *
+	 *****************************/
+
+	/** Bean id for optional assignment state coalescing facade in server configuration */
+	public static final String BEAN_ASSIGNMENT_STATE_COALESCER = "assignmentStateCoalescer";
+
+	/** Bean id for optional device assignment cache facade in server configuration */
+	public static final String BEAN_DEVICE_ASSIGNMENT_CACHE = "deviceAssignmentCache";
+
+	/** Bean id for optional device event batching facade in server configuration */
+	public static final String BEAN_DEVICE_EVENT_BATCHER = "deviceEventBatcher";
+
+	/************
+	 * SECURITY *
+	 ************/
+
+	/** Bean id for optional session token service in server configuration */
+	public static final String BEAN_SESSION_TOKEN_SERVICE = "sessionTokenService";
+
 	/*********************
 	 * DATA INITIALIZERS *
 	 *********************/
@@ -0,0 +1,265 @@
+/*
+ * StartupPhaseRunner.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.log4j.Logger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.core.DaemonThreadFactory;
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Runs server startup phases one at a time or as concurrent groups. The duration of each
+ * phase is recorded in a timer named after the phase. Phases in a concurrent group have
+ * their own timeout, and failures in required phases stop startup while optional phases
+ * only log a warning. Phases run one at a time have no timeout and always pass on their
+ * failures. {@link #finish(boolean)} logs a breakdown of all phase durations and must be
+ * called once startup ends, whether or not it succeeded.
+ * 
+ * @author Derek
+ */
+public class StartupPhaseRunner {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(StartupPhaseRunner.class);
+
+	/** Registry phase timers are added to */
+	private final MetricRegistry registry;
+
+	/** Runs concurrent phases */
+	private final ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory(
+			"SiteWhere Startup"));
+
+	/** Phase durations (in ms) in completion order */
+	private final Map<String, Long> durations = new LinkedHashMap<String, Long>();
+
+	/** Time the runner was created */
+	private final long startTime = System.currentTimeMillis();
+
+	public StartupPhaseRunner(MetricRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Run a single phase on the calling thread. The phase runs to completion and any
+	 * failure is passed on.
+	 * 
+	 * @param phase
+	 * @throws SiteWhereException
+	 */
+	public void run(Phase phase) throws SiteWhereException {
+		long start = System.currentTimeMillis();
+		try {
+			phase.run();
+		} finally {
+			record(phase, System.currentTimeMillis() - start);
+		}
+	}
+
+	/**
+	 * Run a group of independent phases concurrently and wait for all of them to finish
+	 * or time out. A phase that times out is interrupted.
+	 * 
+	 * @param phases
+	 * @throws SiteWhereException if a required phase fails or times out
+	 */
+	public void runConcurrently(Phase... phases) throws SiteWhereException {
+		long groupStart = System.currentTimeMillis();
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (final Phase phase : phases) {
+			futures.add(executor.submit(new Callable<Void>() {
+
+				public Void call() throws Exception {
+					run(phase);
+					return null;
+				}
+			}));
+		}
+		SiteWhereException failure = null;
+		for (int i = 0; i < phases.length; i++) {
+			Phase phase = phases[i];
+			Future<Void> future = futures.get(i);
+			long remaining = groupStart + phase.getTimeoutMs() - System.currentTimeMillis();
+			try {
+				future.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				future.cancel(true);
+				String message = "Startup phase '" + phase.getName() + "' timed out after "
+						+ phase.getTimeoutMs() + "ms.";
+				failure = handleFailure(phase, failure, new SiteWhereException(message));
+			} catch (ExecutionException e) {
+				failure = handleFailure(phase, failure, asSiteWhereException(phase, e.getCause()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for (Future<Void> other : futures) {
+					other.cancel(true);
+				}
+				throw new SiteWhereException("Interrupted while waiting for startup phases.", e);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Log a phase failure and keep the first failure of a required phase.
+	 * 
+	 * @param phase
+	 * @param first
+	 * @param failure
+	 * @return
+	 */
+	protected SiteWhereException handleFailure(Phase phase, SiteWhereException first,
+			SiteWhereException failure) {
+		if (!phase.isRequired()) {
+			LOGGER.warn("Optional startup phase '" + phase.getName() + "' did not complete.", failure);
+			return first;
+		}
+		LOGGER.error("Required startup phase '" + phase.getName() + "' did not complete.", failure);
+		return (first != null) ? first : failure;
+	}
+
+	/**
+	 * Wrap an unexpected phase failure if necessary.
+	 * 
+	 * @param phase
+	 * @param cause
+	 * @return
+	 */
+	protected SiteWhereException asSiteWhereException(Phase phase, Throwable cause) {
+		if (cause instanceof SiteWhereException) {
+			return (SiteWhereException) cause;
+		}
+		return new SiteWhereException("Startup phase '" + phase.getName() + "' failed.", cause);
+	}
+
+	/**
+	 * Record the duration of a phase.
+	 * 
+	 * @param phase
+	 * @param durationMs
+	 */
+	protected void record(Phase phase, long durationMs) {
+		String name = MetricRegistry.name(SiteWhereServer.class, "startup", phase.getName());
+		registry.timer(name).update(durationMs, TimeUnit.MILLISECONDS);
+		synchronized (durations) {
+			durations.put(phase.getName(), durationMs);
+		}
+	}
+
+	/**
+	 * Log the duration of each phase and total startup time, then release the threads
+	 * used for concurrent phases. The total is only recorded in the startup timer if
+	 * startup completed.
+	 * 
+	 * @param completed indicates whether all phases completed
+	 */
+	public void finish(boolean completed) {
+		long total = System.currentTimeMillis() - startTime;
+		StringBuilder message = new StringBuilder();
+		if (completed) {
+			registry.timer(MetricRegistry.name(SiteWhereServer.class, "startup", "total")).update(total,
+					TimeUnit.MILLISECONDS);
+			message.append("Startup completed in ");
+		} else {
+			message.append("Startup failed after ");
+		}
+		message.append(total).append("ms (");
+		synchronized (durations) {
+			boolean first = true;
+			for (Map.Entry<String, Long> entry : durations.entrySet()) {
+				if (!first) {
+					message.append(", ");
+				}
+				message.append(entry.getKey()).append("=").append(entry.getValue()).append("ms");
+				first = false;
+			}
+		}
+		message.append(").");
+		if (completed) {
+			LOGGER.info(message.toString());
+		} else {
+			LOGGER.error(message.toString());
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A named unit of startup work.
+	 * 
+	 * @author Derek
+	 */
+	public static abstract class Phase {
+
+		/** Phase name used in logs and metric names */
+		private final String name;
+
+		/** Time (in ms) the phase may take when run concurrently or zero if not limited */
+		private final long timeoutMs;
+
+		/** Indicates whether startup fails if the phase fails */
+		private final boolean required;
+
+		/**
+		 * Create a phase that is run on its own. It has no timeout and its failures are
+		 * always passed on.
+		 * 
+		 * @param name
+		 */
+		public Phase(String name) {
+			this(name, 0, true);
+		}
+
+		/**
+		 * Create a phase that is run as part of a concurrent group.
+		 * 
+		 * @param name
+		 * @param timeoutMs
+		 * @param required
+		 */
+		public Phase(String name, long timeoutMs, boolean required) {
+			this.name = name;
+			this.timeoutMs = timeoutMs;
+			this.required = required;
+		}
+
+		/**
+		 * Do the work of the phase.
+		 * 
+		 * @throws SiteWhereException
+		 */
+		public abstract void run() throws SiteWhereException;
+
+		public String getName() {
+			return name;
+		}
+
+		public long getTimeoutMs() {
+			return timeoutMs;
+		}
+
+		public boolean isRequired() {
+			return required;
+		}
+	}
+}
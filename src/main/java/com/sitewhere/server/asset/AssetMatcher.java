@@ -18,11 +18,7 @@ public class AssetMatcher {
 	 * @return
 	 */
 	public boolean isHardwareMatch(IHardwareAsset asset, String criteria) {
-		if ((contains(asset.getName(), criteria)) || (contains(asset.getDescription(), criteria))
-				|| (contains(asset.getId(), criteria))) {
-			return true;
-		}
-		return false;
+		return containsAny(getHardwareFields(asset), criteria);
 	}
 
 	/**
@@ -33,9 +29,41 @@ public class AssetMatcher {
 	 * @return
 	 */
 	public boolean isPersonMatch(IPersonAsset asset, String criteria) {
-		if ((contains(asset.getName(), criteria)) || (contains(asset.getEmailAddress(), criteria))
-				|| (contains(asset.getUserName(), criteria)) || (contains(asset.getId(), criteria))) {
-			return true;
+		return containsAny(getPersonFields(asset), criteria);
+	}
+
+	/**
+	 * Get the hardware asset fields searched for matches.
+	 * 
+	 * @param asset
+	 * @return
+	 */
+	public String[] getHardwareFields(IHardwareAsset asset) {
+		return new String[] { asset.getName(), asset.getDescription(), asset.getId() };
+	}
+
+	/**
+	 * Get the person asset fields searched for matches.
+	 * 
+	 * @param asset
+	 * @return
+	 */
+	public String[] getPersonFields(IPersonAsset asset) {
+		return new String[] { asset.getName(), asset.getEmailAddress(), asset.getUserName(), asset.getId() };
+	}
+
+	/**
+	 * Indicates if any of the fields contains the given value.
+	 * 
+	 * @param fields
+	 * @param value
+	 * @return
+	 */
+	protected boolean containsAny(String[] fields, String value) {
+		for (String field : fields) {
+			if (contains(field, value)) {
+				return true;
+			}
 		}
 		return false;
 	}
@@ -51,6 +79,19 @@ public class AssetMatcher {
 		if (field == null) {
 			return false;
 		}
-		return field.trim().toLowerCase().indexOf(value) != -1;
+		return normalize(field).indexOf(value) != -1;
+	}
+
+	/**
+	 * Normalize a field value for comparison.
+	 * 
+	 * @param field
+	 * @return
+	 */
+	public static String normalize(String field) {
+		if (field == null) {
+			return null;
+		}
+		return field.trim().toLowerCase();
 	}
 }
\ No newline at end of file
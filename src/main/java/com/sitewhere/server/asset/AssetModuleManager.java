@@ -12,21 +12,49 @@ package com.sitewhere.server.asset;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.log4j.Logger;
 
-import com.sitewhere.rest.model.asset.Asset;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.sitewhere.core.DaemonThreadFactory;
+import com.sitewhere.rest.model.command.CommandResponse;
+import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.server.cache.LruTtlCache;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.AssetType;
 import com.sitewhere.spi.asset.IAsset;
 import com.sitewhere.spi.asset.IAssetModule;
 import com.sitewhere.spi.asset.IAssetModuleManager;
+import com.sitewhere.spi.command.CommandResult;
 import com.sitewhere.spi.command.ICommandResponse;
 import com.sitewhere.spi.device.DeviceAssignmentType;
+import com.sitewhere.spi.search.ISearchCriteria;
 
 /**
- * Manages the list of modules
+ * Manages the list of modules. Modules are started and refreshed in parallel, each with
+ * its own timeout, so a slow or failing module does not hold up the others. Only modules
+ * that started successfully are used for lookups and searches. Searches are federated
+ * across all modules that support the asset type and the sorted results are merged.
+ * Lookups are routed through a table of available modules by asset type and resolved
+ * assets are cached until the modules are refreshed or a module reloads its assets on its
+ * own (see {@link IReloadingAssetModule}).
  * 
  * @author dadams
  */
@@ -35,27 +63,111 @@ public class AssetModuleManager implements IAssetModuleManager {
 	/** Static logger instance */
 	private static Logger LOGGER = Logger.getLogger(AssetModuleManager.class);
 
+	/** Default time (in ms) a module may take to start or refresh */
+	public static final long DEFAULT_MODULE_TIMEOUT_MS = 60 * 1000;
+
+	/** Default maximum number of cached assets */
+	public static final int DEFAULT_CACHE_MAX_SIZE = 10000;
+
+	/** Default time (in ms) a cached asset stays valid */
+	public static final long DEFAULT_CACHE_TTL_MS = 5 * 60 * 1000;
+
 	/** List of asset modules */
 	private List<IAssetModule<?>> modules;
 
-	/*
-	 * (non-Javadoc)
+	/** Maximum number of cached assets */
+	private int cacheMaxSize = DEFAULT_CACHE_MAX_SIZE;
+
+	/** Time (in ms) a cached asset stays valid */
+	private long cacheTtlMs = DEFAULT_CACHE_TTL_MS;
+
+	/** Available modules for each asset type in configured order */
+	private volatile Map<AssetType, List<IAssetModule<?>>> routes =
+			new EnumMap<AssetType, List<IAssetModule<?>>>(AssetType.class);
+
+	/** Resolved assets by type and id */
+	private volatile LruTtlCache<String, IAsset> assetCache;
+
+	/** Time (in ms) a module may take to start or refresh */
+	private long moduleTimeoutMs = DEFAULT_MODULE_TIMEOUT_MS;
+
+	/** Status of each module */
+	private ConcurrentHashMap<IAssetModule<?>, AssetModuleStatus> statuses =
+			new ConcurrentHashMap<IAssetModule<?>, AssetModuleStatus>();
+
+	/** Runs module start and refresh calls. Null unless started */
+	private volatile ExecutorService executor;
+
+	/** Drops cached assets when a module reloads on its own */
+	private final IAssetReloadListener reloadListener = new IAssetReloadListener() {
+
+		public void assetsReloaded(IAssetModule<?> module) {
+			LOGGER.info("Asset module reloaded. Clearing cached assets: " + module.getName());
+			clearAssetCache();
+		}
+	};
+
+	/**
+	 * Start all modules in parallel. A module that does not start within the timeout is
+	 * marked {@link AssetModuleStatus#TimedOut} and its start is cancelled. If the module
+	 * ignores the cancellation and finishes starting anyway, it becomes available at that
+	 * point.
 	 * 
 	 * @see com.sitewhere.spi.asset.IAssetModuleManager#start()
 	 */
 	public void start() throws SiteWhereException {
-		for (IAssetModule<?> module : modules) {
-			LOGGER.info("Starting asset module: " + module.getName());
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		assetCache =
+				new LruTtlCache<String, IAsset>(MetricRegistry.name(AssetModuleManager.class, "assetCache"),
+						cacheMaxSize, cacheTtlMs, SiteWhereServer.getInstance().getMetricRegistry());
+		ExecutorService pool = Executors.newCachedThreadPool(new DaemonThreadFactory("SiteWhere Asset Modules"));
+		executor = pool;
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (final IAssetModule<?> module : modules) {
+			statuses.put(module, AssetModuleStatus.Starting);
+			if (module instanceof IReloadingAssetModule) {
+				((IReloadingAssetModule) module).setReloadListener(reloadListener);
+			}
+			futures.add(pool.submit(new Callable<Void>() {
+
+				public Void call() throws Exception {
+					LOGGER.info("Starting asset module: " + module.getName());
+					Timer.Context context = getTimer(module, "start").time();
+					try {
+						module.start();
+					} finally {
+						context.stop();
+					}
+					if (statuses.replace(module, AssetModuleStatus.Starting, AssetModuleStatus.Available)) {
+						LOGGER.info("Started asset module: " + module.getName());
+					} else if (statuses.replace(module, AssetModuleStatus.TimedOut, AssetModuleStatus.Available)) {
+						LOGGER.warn("Asset module started after timing out: " + module.getName());
+						rebuildRoutes();
+					}
+					return null;
+				}
+			}));
+		}
+		long deadline = System.currentTimeMillis() + moduleTimeoutMs;
+		for (int i = 0; i < modules.size(); i++) {
+			IAssetModule<?> module = modules.get(i);
 			try {
-				module.start();
-				LOGGER.info("Started asset module: " + module.getName());
-			} catch (SiteWhereException e) {
-				LOGGER.error("Unable to start asset module: " + module.getName(), e);
-			} catch (Throwable t) {
-				LOGGER.error("Unhandled exception in asset module: " + module.getName(), t);
-				t.printStackTrace();
+				await(module, "start", futures.get(i), deadline);
+			} catch (TimeoutException e) {
+				statuses.replace(module, AssetModuleStatus.Starting, AssetModuleStatus.TimedOut);
+				LOGGER.error("Asset module did not start within " + moduleTimeoutMs + "ms: " + module.getName());
+			} catch (ExecutionException e) {
+				statuses.put(module, AssetModuleStatus.Failed);
+				if (e.getCause() instanceof SiteWhereException) {
+					LOGGER.error("Unable to start asset module: " + module.getName(), e.getCause());
+				} else {
+					LOGGER.error("Unhandled exception in asset module: " + module.getName(), e.getCause());
+				}
 			}
 		}
+		rebuildRoutes();
 	}
 
 	/*
@@ -65,6 +177,9 @@ public class AssetModuleManager implements IAssetModuleManager {
 	 */
 	public void stop() {
 		for (IAssetModule<?> module : modules) {
+			if (module instanceof IReloadingAssetModule) {
+				((IReloadingAssetModule) module).setReloadListener(null);
+			}
 			try {
 				LOGGER.info("Stopping asset module: " + module.getName());
 				module.stop();
@@ -73,6 +188,150 @@ public class AssetModuleManager implements IAssetModuleManager {
 				LOGGER.error("Unable to stop asset module.", e);
 			}
 		}
+		ExecutorService pool = executor;
+		executor = null;
+		if (pool != null) {
+			pool.shutdownNow();
+		}
+		statuses.clear();
+		rebuildRoutes();
+	}
+
+	/**
+	 * Get the executor for module calls, failing if the manager is not started.
+	 * 
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	protected ExecutorService requireStarted() throws SiteWhereException {
+		ExecutorService pool = executor;
+		if (pool == null) {
+			throw new SiteWhereException("Asset module manager has not been started.");
+		}
+		return pool;
+	}
+
+	/**
+	 * Wait for a module call to complete, recording its outcome. A call that does not
+	 * complete by the deadline is cancelled.
+	 * 
+	 * @param module
+	 * @param operation
+	 * @param future
+	 * @param deadline
+	 * @return
+	 * @throws TimeoutException
+	 * @throws ExecutionException
+	 * @throws SiteWhereException if interrupted while waiting
+	 */
+	protected <T> T await(IAssetModule<?> module, String operation, Future<T> future, long deadline)
+			throws TimeoutException, ExecutionException, SiteWhereException {
+		MetricRegistry registry = SiteWhereServer.getInstance().getMetricRegistry();
+		try {
+			T result = future.get(Math.max(deadline - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+			registry.meter(getMetricName(module, operation, "succeeded")).mark();
+			return result;
+		} catch (TimeoutException e) {
+			future.cancel(true);
+			registry.meter(getMetricName(module, operation, "timedOut")).mark();
+			throw e;
+		} catch (ExecutionException e) {
+			registry.meter(getMetricName(module, operation, "failed")).mark();
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.cancel(true);
+			throw new SiteWhereException("Interrupted while waiting for asset module: " + module.getName(), e);
+		}
+	}
+
+	/**
+	 * Get the timer for an operation on a module.
+	 * 
+	 * @param module
+	 * @param operation
+	 * @return
+	 */
+	protected Timer getTimer(IAssetModule<?> module, String operation) {
+		return SiteWhereServer.getInstance().getMetricRegistry().timer(
+				getMetricName(module, operation, "timer"));
+	}
+
+	/**
+	 * Get the name of a metric for an operation on a module.
+	 * 
+	 * @param module
+	 * @param operation
+	 * @param metric
+	 * @return
+	 */
+	protected String getMetricName(IAssetModule<?> module, String operation, String metric) {
+		return MetricRegistry.name(AssetModuleManager.class, module.getId(), operation, metric);
+	}
+
+	/**
+	 * Rebuild the table of available modules for each asset type. Called whenever module
+	 * status may have changed so lookups do not need to check every module. Synchronized so
+	 * the last rebuild always reflects the latest statuses.
+	 */
+	protected synchronized void rebuildRoutes() {
+		Map<AssetType, List<IAssetModule<?>>> updated =
+				new EnumMap<AssetType, List<IAssetModule<?>>>(AssetType.class);
+		for (AssetType type : AssetType.values()) {
+			List<IAssetModule<?>> supporting = new ArrayList<IAssetModule<?>>();
+			for (IAssetModule<?> module : modules) {
+				if (isModuleAvailable(module) && module.isAssetTypeSupported(type)) {
+					supporting.add(module);
+				}
+			}
+			updated.put(type, Collections.unmodifiableList(supporting));
+		}
+		routes = updated;
+	}
+
+	/**
+	 * Get the available modules that support an asset type.
+	 * 
+	 * @param type
+	 * @return
+	 */
+	protected List<IAssetModule<?>> getRoute(AssetType type) {
+		List<IAssetModule<?>> route = routes.get(type);
+		if (route == null) {
+			return Collections.emptyList();
+		}
+		return route;
+	}
+
+	/**
+	 * Get the key used to cache an asset.
+	 * 
+	 * @param type
+	 * @param id
+	 * @return
+	 */
+	protected static String getCacheKey(AssetType type, String id) {
+		return type.name() + ":" + id;
+	}
+
+	/**
+	 * Get the status of a module.
+	 * 
+	 * @param module
+	 * @return the status or null if the module has not been started
+	 */
+	public AssetModuleStatus getModuleStatus(IAssetModule<?> module) {
+		return statuses.get(module);
+	}
+
+	/**
+	 * Indicates whether a module started successfully and may be used for lookups.
+	 * 
+	 * @param module
+	 * @return
+	 */
+	public boolean isModuleAvailable(IAssetModule<?> module) {
+		return statuses.get(module) == AssetModuleStatus.Available;
 	}
 
 	/*
@@ -83,15 +342,65 @@ public class AssetModuleManager implements IAssetModuleManager {
 	 * .AssetType, java.lang.String)
 	 */
 	public IAsset getAssetById(AssetType type, String id) throws SiteWhereException {
-		for (IAssetModule<?> module : modules) {
-			if (module.isAssetTypeSupported(type)) {
+		requireStarted();
+		String key = getCacheKey(type, id);
+		IAsset cached = assetCache.get(key);
+		if (cached != null) {
+			return cached;
+		}
+		for (IAssetModule<?> module : getRoute(type)) {
+			IAsset result = module.getAssetById(type, id);
+			if (result != null) {
+				assetCache.put(key, result);
+				return result;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get several assets of the same type at once. Cached assets are returned directly and
+	 * each module is only asked for ids that earlier modules did not resolve.
+	 * 
+	 * @param type
+	 * @param ids
+	 * @return assets by id in request order. Ids that could not be resolved are left out.
+	 * @throws SiteWhereException
+	 */
+	public Map<String, IAsset> getAssetsByIds(AssetType type, List<String> ids) throws SiteWhereException {
+		requireStarted();
+		Map<String, IAsset> found = new LinkedHashMap<String, IAsset>();
+		List<String> missing = new ArrayList<String>();
+		for (String id : ids) {
+			if (found.containsKey(id)) {
+				continue;
+			}
+			IAsset cached = assetCache.get(getCacheKey(type, id));
+			found.put(id, cached);
+			if (cached == null) {
+				missing.add(id);
+			}
+		}
+		for (IAssetModule<?> module : getRoute(type)) {
+			if (missing.isEmpty()) {
+				break;
+			}
+			List<String> unresolved = new ArrayList<String>();
+			for (String id : missing) {
 				IAsset result = module.getAssetById(type, id);
 				if (result != null) {
-					return result;
+					assetCache.put(getCacheKey(type, id), result);
+					found.put(id, result);
+				} else {
+					unresolved.add(id);
 				}
 			}
+			missing = unresolved;
 		}
-		return null;
+		for (String id : missing) {
+			found.remove(id);
+		}
+		return found;
 	}
 
 	/*
@@ -118,29 +427,209 @@ public class AssetModuleManager implements IAssetModuleManager {
 	 * , java.lang.String)
 	 */
 	public List<? extends IAsset> search(AssetType type, String criteria) throws SiteWhereException {
-		for (IAssetModule<?> module : modules) {
-			if (module.isAssetTypeSupported(type)) {
-				List<? extends IAsset> results = module.search(type, criteria);
-				Collections.sort(results);
-				return results;
+		return search(type, criteria, new SearchCriteria(1, 0));
+	}
+
+	/**
+	 * Search all available modules that support an asset type and return one page of the
+	 * combined results in sorted order. Modules are searched in parallel. Each module only
+	 * sorts the entries that can appear on or before the requested page, then the sorted
+	 * module results are merged. Modules that fail or time out are left out of the results.
+	 * 
+	 * @param type
+	 * @param criteria
+	 * @param paging page number and size. A page size of zero returns all results.
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	public List<IAsset> search(final AssetType type, final String criteria, ISearchCriteria paging)
+			throws SiteWhereException {
+		int pageSize = Math.max(paging.getPageSize(), 0);
+		int offset = (pageSize == 0) ? 0 : (int) Math.min((long) (Math.max(paging.getPageNumber(), 1) - 1)
+				* pageSize, Integer.MAX_VALUE);
+		final int limit = (pageSize == 0) ? Integer.MAX_VALUE : (int) Math.min((long) offset + pageSize,
+				Integer.MAX_VALUE);
+		List<IAssetModule<?>> supporting = getRoute(type);
+		if (supporting.isEmpty()) {
+			return new ArrayList<IAsset>();
+		}
+		ExecutorService pool = requireStarted();
+		if (supporting.size() == 1) {
+			List<List<IAsset>> single = new ArrayList<List<IAsset>>();
+			single.add(firstSorted(supporting.get(0).search(type, criteria), limit));
+			return merge(single, offset, limit);
+		}
+		List<Future<List<IAsset>>> futures = new ArrayList<Future<List<IAsset>>>();
+		for (final IAssetModule<?> module : supporting) {
+			futures.add(pool.submit(new Callable<List<IAsset>>() {
+
+				public List<IAsset> call() throws Exception {
+					Timer.Context context = getTimer(module, "search").time();
+					try {
+						return firstSorted(module.search(type, criteria), limit);
+					} finally {
+						context.stop();
+					}
+				}
+			}));
+		}
+		long deadline = System.currentTimeMillis() + moduleTimeoutMs;
+		List<List<IAsset>> sorted = new ArrayList<List<IAsset>>();
+		for (int i = 0; i < supporting.size(); i++) {
+			IAssetModule<?> module = supporting.get(i);
+			try {
+				sorted.add(await(module, "search", futures.get(i), deadline));
+			} catch (TimeoutException e) {
+				LOGGER.warn("Asset module search did not complete within " + moduleTimeoutMs + "ms: "
+						+ module.getName());
+			} catch (ExecutionException e) {
+				LOGGER.error("Unable to search asset module: " + module.getName(), e.getCause());
 			}
 		}
-		return new ArrayList<Asset>();
+		return merge(sorted, offset, limit);
 	}
 
-	/*
-	 * (non-Javadoc)
+	/**
+	 * Get the first entries of a list in sorted order. If only part of the list is needed,
+	 * a bounded heap selects the entries without sorting the whole list.
+	 * 
+	 * @param results
+	 * @param count
+	 * @return
+	 */
+	protected static List<IAsset> firstSorted(List<? extends IAsset> results, int count) {
+		if (results == null) {
+			return new ArrayList<IAsset>();
+		}
+		if (count >= results.size()) {
+			List<IAsset> all = new ArrayList<IAsset>(results);
+			Collections.sort(all);
+			return all;
+		}
+		PriorityQueue<IAsset> largest = new PriorityQueue<IAsset>(count + 1, Collections.reverseOrder());
+		for (IAsset asset : results) {
+			if (largest.size() < count) {
+				largest.add(asset);
+			} else if (asset.compareTo(largest.peek()) < 0) {
+				largest.poll();
+				largest.add(asset);
+			}
+		}
+		IAsset[] first = new IAsset[largest.size()];
+		for (int i = first.length - 1; i >= 0; i--) {
+			first[i] = largest.poll();
+		}
+		List<IAsset> list = new ArrayList<IAsset>(first.length);
+		Collections.addAll(list, first);
+		return list;
+	}
+
+	/**
+	 * Merge sorted lists and return the entries between offset (inclusive) and limit
+	 * (exclusive) of the merged order.
+	 * 
+	 * @param sorted
+	 * @param offset
+	 * @param limit
+	 * @return
+	 */
+	protected static List<IAsset> merge(List<List<IAsset>> sorted, int offset, int limit) {
+		PriorityQueue<MergeCursor> heads =
+				new PriorityQueue<MergeCursor>(Math.max(sorted.size(), 1), MergeCursor.BY_CURRENT);
+		for (List<IAsset> list : sorted) {
+			if (!list.isEmpty()) {
+				heads.add(new MergeCursor(list));
+			}
+		}
+		List<IAsset> page = new ArrayList<IAsset>();
+		int position = 0;
+		while ((position < limit) && (!heads.isEmpty())) {
+			MergeCursor cursor = heads.poll();
+			if (position >= offset) {
+				page.add(cursor.current());
+			}
+			position++;
+			if (cursor.advance()) {
+				heads.add(cursor);
+			}
+		}
+		return page;
+	}
+
+	/**
+	 * Refresh all modules in parallel. A module whose refresh succeeds becomes
+	 * {@link AssetModuleStatus#Available}, even if it did not start. A module whose refresh
+	 * fails or does not complete within the timeout keeps its previous status, since modules
+	 * keep serving their last loaded assets when a load fails. If a timed out refresh
+	 * ignores the cancellation and later succeeds, the module becomes available at that
+	 * point.
 	 * 
 	 * @see com.sitewhere.spi.asset.IAssetModuleManager#refreshModules()
 	 */
 	public List<ICommandResponse> refreshModules() throws SiteWhereException {
+		ExecutorService pool = requireStarted();
+		final AtomicBoolean awaited = new AtomicBoolean();
+		List<Future<ICommandResponse>> futures = new ArrayList<Future<ICommandResponse>>();
+		for (final IAssetModule<?> module : modules) {
+			futures.add(pool.submit(new Callable<ICommandResponse>() {
+
+				public ICommandResponse call() throws Exception {
+					ICommandResponse response;
+					Timer.Context context = getTimer(module, "refresh").time();
+					try {
+						response = module.refresh();
+					} finally {
+						context.stop();
+					}
+					if ((response != null) && (response.getResult() == CommandResult.Successful)) {
+						AssetModuleStatus previous = statuses.put(module, AssetModuleStatus.Available);
+						if (awaited.get()) {
+							LOGGER.warn("Asset module refreshed after timing out: " + module.getName());
+							if (previous != AssetModuleStatus.Available) {
+								rebuildRoutes();
+							}
+							clearAssetCache();
+						}
+					}
+					return response;
+				}
+			}));
+		}
+		long deadline = System.currentTimeMillis() + moduleTimeoutMs;
 		List<ICommandResponse> responses = new ArrayList<ICommandResponse>();
-		for (IAssetModule<?> module : modules) {
-			responses.add(module.refresh());
+		for (int i = 0; i < modules.size(); i++) {
+			IAssetModule<?> module = modules.get(i);
+			try {
+				ICommandResponse response = await(module, "refresh", futures.get(i), deadline);
+				if ((response == null) || (response.getResult() != CommandResult.Successful)) {
+					LOGGER.error("Asset module refresh was not successful: " + module.getName());
+				}
+				responses.add(response);
+			} catch (TimeoutException e) {
+				String message = "Refresh did not complete within " + moduleTimeoutMs + "ms.";
+				LOGGER.error(message + " Module: " + module.getName());
+				responses.add(new CommandResponse(CommandResult.Failed, message));
+			} catch (ExecutionException e) {
+				LOGGER.error("Unable to refresh asset module: " + module.getName(), e.getCause());
+				responses.add(new CommandResponse(CommandResult.Failed, e.getCause().getMessage()));
+			}
 		}
+		awaited.set(true);
+		rebuildRoutes();
+		clearAssetCache();
 		return responses;
 	}
 
+	/**
+	 * Drop all cached assets.
+	 */
+	protected void clearAssetCache() {
+		LruTtlCache<String, IAsset> cache = assetCache;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -153,4 +642,67 @@ public class AssetModuleManager implements IAssetModuleManager {
 	public void setModules(List<IAssetModule<?>> modules) {
 		this.modules = modules;
 	}
-}
\ No newline at end of file
+
+	public int getCacheMaxSize() {
+		return cacheMaxSize;
+	}
+
+	public void setCacheMaxSize(int cacheMaxSize) {
+		this.cacheMaxSize = cacheMaxSize;
+	}
+
+	public long getCacheTtlMs() {
+		return cacheTtlMs;
+	}
+
+	public void setCacheTtlMs(long cacheTtlMs) {
+		this.cacheTtlMs = cacheTtlMs;
+	}
+
+	public long getModuleTimeoutMs() {
+		return moduleTimeoutMs;
+	}
+
+	public void setModuleTimeoutMs(long moduleTimeoutMs) {
+		this.moduleTimeoutMs = moduleTimeoutMs;
+	}
+
+	/**
+	 * Position in one sorted list during a merge.
+	 * 
+	 * @author Derek
+	 */
+	private static class MergeCursor {
+
+		/** Orders cursors by their current entry */
+		private static final Comparator<MergeCursor> BY_CURRENT = new Comparator<MergeCursor>() {
+
+			public int compare(MergeCursor a, MergeCursor b) {
+				return a.current().compareTo(b.current());
+			}
+		};
+
+		/** Sorted list */
+		private final List<IAsset> list;
+
+		/** Index of current entry */
+		private int index = 0;
+
+		public MergeCursor(List<IAsset> list) {
+			this.list = list;
+		}
+
+		public IAsset current() {
+			return list.get(index);
+		}
+
+		/**
+		 * Move to the next entry.
+		 * 
+		 * @return false if the list is exhausted
+		 */
+		public boolean advance() {
+			return ++index < list.size();
+		}
+	}
+}
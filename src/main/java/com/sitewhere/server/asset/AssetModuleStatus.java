@@ -0,0 +1,30 @@
+/*
+ * AssetModuleStatus.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset;
+
+/**
+ * Lifecycle status of an asset module as tracked by the {@link AssetModuleManager}.
+ * 
+ * @author Derek
+ */
+public enum AssetModuleStatus {
+
+	/** Module is starting */
+	Starting,
+
+	/** Module started and is serving requests */
+	Available,
+
+	/** Module failed to start */
+	Failed,
+
+	/** Module did not start within the allowed time */
+	TimedOut;
+}
@@ -0,0 +1,250 @@
+/*
+ * AssetSearchIndex.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sitewhere.spi.asset.IHardwareAsset;
+import com.sitewhere.spi.asset.IPersonAsset;
+
+/**
+ * Trigram index over the searchable fields of a fixed list of assets. Fields are
+ * normalized once when the index is built. Criteria of three or more characters are
+ * answered by intersecting the postings for each trigram in the criteria and checking the
+ * remaining candidates, while shorter criteria fall back to a scan of the normalized
+ * fields. Results match {@link AssetMatcher} and are returned in the order the assets
+ * were given to the index.
+ * 
+ * @author Derek
+ * 
+ * @param <T>
+ */
+public class AssetSearchIndex<T> {
+
+	/** Length of indexed grams */
+	private static final int GRAM_LENGTH = 3;
+
+	/** Indexed assets in original order */
+	private final List<T> assets;
+
+	/** Normalized searchable fields for each asset */
+	private final String[][] fields;
+
+	/** Sorted asset positions for each trigram */
+	private final Map<String, int[]> postings;
+
+	protected AssetSearchIndex(List<T> assets, String[][] fields) {
+		this.assets = assets;
+		this.fields = fields;
+		this.postings = buildPostings(fields);
+	}
+
+	/**
+	 * Build an index over hardware assets.
+	 * 
+	 * @param assets
+	 * @param matcher
+	 * @return
+	 */
+	public static <T extends IHardwareAsset> AssetSearchIndex<T> forHardware(Collection<T> assets,
+			AssetMatcher matcher) {
+		List<T> list = new ArrayList<T>(assets);
+		String[][] fields = new String[list.size()][];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = normalize(matcher.getHardwareFields(list.get(i)));
+		}
+		return new AssetSearchIndex<T>(list, fields);
+	}
+
+	/**
+	 * Build an index over person assets.
+	 * 
+	 * @param assets
+	 * @param matcher
+	 * @return
+	 */
+	public static <T extends IPersonAsset> AssetSearchIndex<T> forPeople(Collection<T> assets,
+			AssetMatcher matcher) {
+		List<T> list = new ArrayList<T>(assets);
+		String[][] fields = new String[list.size()][];
+		for (int i = 0; i < fields.length; i++) {
+			fields[i] = normalize(matcher.getPersonFields(list.get(i)));
+		}
+		return new AssetSearchIndex<T>(list, fields);
+	}
+
+	/**
+	 * Find all assets with a field that contains the criteria. Criteria are expected in
+	 * lower case as passed to {@link AssetMatcher}.
+	 * 
+	 * @param criteria
+	 * @return
+	 */
+	public List<T> search(String criteria) {
+		List<T> results = new ArrayList<T>();
+		if (criteria.length() < GRAM_LENGTH) {
+			for (int i = 0; i < fields.length; i++) {
+				if (matches(i, criteria)) {
+					results.add(assets.get(i));
+				}
+			}
+			return results;
+		}
+		int[] candidates = null;
+		for (int i = 0; i + GRAM_LENGTH <= criteria.length(); i++) {
+			int[] posting = postings.get(criteria.substring(i, i + GRAM_LENGTH));
+			if (posting == null) {
+				return results;
+			}
+			candidates = (candidates == null) ? posting : intersect(candidates, posting);
+			if (candidates.length == 0) {
+				return results;
+			}
+		}
+		for (int position : candidates) {
+			if (matches(position, criteria)) {
+				results.add(assets.get(position));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Get the number of indexed assets.
+	 * 
+	 * @return
+	 */
+	public int size() {
+		return assets.size();
+	}
+
+	/**
+	 * Check whether any normalized field of an asset contains the criteria.
+	 * 
+	 * @param position
+	 * @param criteria
+	 * @return
+	 */
+	protected boolean matches(int position, String criteria) {
+		for (String field : fields[position]) {
+			if ((field != null) && (field.indexOf(criteria) != -1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Normalize fields the same way {@link AssetMatcher} does before comparing.
+	 * 
+	 * @param values
+	 * @return
+	 */
+	protected static String[] normalize(String[] values) {
+		String[] normalized = new String[values.length];
+		for (int i = 0; i < values.length; i++) {
+			normalized[i] = AssetMatcher.normalize(values[i]);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Build sorted postings lists for every trigram in the fields.
+	 * 
+	 * @param fields
+	 * @return
+	 */
+	protected static Map<String, int[]> buildPostings(String[][] fields) {
+		Map<String, IntList> lists = new HashMap<String, IntList>();
+		for (int position = 0; position < fields.length; position++) {
+			for (String field : fields[position]) {
+				if (field == null) {
+					continue;
+				}
+				for (int i = 0; i + GRAM_LENGTH <= field.length(); i++) {
+					String gram = field.substring(i, i + GRAM_LENGTH);
+					IntList list = lists.get(gram);
+					if (list == null) {
+						list = new IntList();
+						lists.put(gram, list);
+					}
+					list.add(position);
+				}
+			}
+		}
+		Map<String, int[]> postings = new HashMap<String, int[]>(lists.size() * 4 / 3 + 1);
+		for (Map.Entry<String, IntList> entry : lists.entrySet()) {
+			postings.put(entry.getKey(), entry.getValue().toArray());
+		}
+		return postings;
+	}
+
+	/**
+	 * Intersect two sorted arrays of positions.
+	 * 
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	protected static int[] intersect(int[] a, int[] b) {
+		int[] result = new int[Math.min(a.length, b.length)];
+		int i = 0, j = 0, count = 0;
+		while ((i < a.length) && (j < b.length)) {
+			if (a[i] < b[j]) {
+				i++;
+			} else if (a[i] > b[j]) {
+				j++;
+			} else {
+				result[count++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return (count == result.length) ? result : Arrays.copyOf(result, count);
+	}
+
+	/**
+	 * Growable list of ascending positions.
+	 * 
+	 * @author Derek
+	 */
+	private static class IntList {
+
+		/** Values */
+		private int[] values = new int[4];
+
+		/** Number of values */
+		private int size;
+
+		/**
+		 * Add a position unless it was the last one added.
+		 * 
+		 * @param value
+		 */
+		public void add(int value) {
+			if ((size > 0) && (values[size - 1] == value)) {
+				return;
+			}
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		public int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
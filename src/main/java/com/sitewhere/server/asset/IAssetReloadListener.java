@@ -0,0 +1,28 @@
+/*
+ * IAssetReloadListener.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset;
+
+import com.sitewhere.spi.asset.IAssetModule;
+
+/**
+ * Notified when an asset module publishes newly loaded assets on its own, outside of a
+ * refresh requested through the {@link AssetModuleManager}.
+ * 
+ * @author Derek
+ */
+public interface IAssetReloadListener {
+
+	/**
+	 * Called after a module has published reloaded assets.
+	 * 
+	 * @param module
+	 */
+	public void assetsReloaded(IAssetModule<?> module);
+}
@@ -0,0 +1,27 @@
+/*
+ * IReloadingAssetModule.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset;
+
+/**
+ * Implemented by asset modules that may reload their assets on their own, for instance
+ * when a watched file changes. The {@link AssetModuleManager} registers a listener so it
+ * can drop assets it has cached from the module.
+ * 
+ * @author Derek
+ */
+public interface IReloadingAssetModule {
+
+	/**
+	 * Set the listener notified after the module reloads its assets on its own.
+	 * 
+	 * @param listener the listener or null for none
+	 */
+	public void setReloadListener(IAssetReloadListener listener);
+}
@@ -0,0 +1,117 @@
+/*
+ * AssetFileWatcher.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset.filesystem;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.sitewhere.core.DaemonThreadFactory;
+
+/**
+ * Polls an asset file for changes and runs a callback once the file has stopped changing
+ * for the debounce interval. This keeps a file that is still being written from being
+ * loaded and collapses a burst of writes into a single reload.
+ * 
+ * @author Derek
+ */
+public class AssetFileWatcher {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(AssetFileWatcher.class);
+
+	/** File being watched */
+	private final File file;
+
+	/** Interval (in ms) between checks */
+	private final long pollIntervalMs;
+
+	/** Time (in ms) the file must stay unchanged before the callback runs */
+	private final long debounceMs;
+
+	/** Called when the file has changed */
+	private final Runnable callback;
+
+	/** Runs the checks */
+	private ScheduledExecutorService poller;
+
+	/** Last modified time of the file when last loaded or checked */
+	private long lastModified;
+
+	/** Length of the file when last loaded or checked */
+	private long lastLength;
+
+	/** Time a change was first seen or zero if none is pending */
+	private long changedAt = 0;
+
+	public AssetFileWatcher(File file, long pollIntervalMs, long debounceMs, Runnable callback) {
+		this.file = file;
+		this.pollIntervalMs = pollIntervalMs;
+		this.debounceMs = debounceMs;
+		this.callback = callback;
+	}
+
+	/**
+	 * Start watching. The current state of the file is taken as already loaded.
+	 */
+	public synchronized void start() {
+		lastModified = file.lastModified();
+		lastLength = file.length();
+		poller = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"SiteWhere Asset File Watcher"));
+		poller.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				check();
+			}
+		}, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+		LOGGER.info("Watching asset file for changes: " + file.getAbsolutePath());
+	}
+
+	/**
+	 * Stop watching.
+	 */
+	public synchronized void stop() {
+		if (poller != null) {
+			poller.shutdownNow();
+			poller = null;
+		}
+	}
+
+	/**
+	 * Check the file for changes and run the callback once it has settled.
+	 */
+	protected void check() {
+		long modified = file.lastModified();
+		long length = file.length();
+		long now = System.currentTimeMillis();
+		if ((modified != lastModified) || (length != lastLength)) {
+			lastModified = modified;
+			lastLength = length;
+			changedAt = now;
+			return;
+		}
+		if ((changedAt != 0) && (now - changedAt >= debounceMs)) {
+			changedAt = 0;
+			if (!file.exists()) {
+				LOGGER.warn("Asset file was removed. Keeping current assets: " + file.getAbsolutePath());
+				return;
+			}
+			try {
+				callback.run();
+			} catch (Throwable t) {
+				LOGGER.error("Unable to reload changed asset file: " + file.getAbsolutePath(), t);
+			}
+		}
+	}
+}
@@ -16,15 +16,15 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-
 import org.apache.log4j.Logger;
 
 import com.sitewhere.rest.model.asset.HardwareAsset;
 import com.sitewhere.rest.model.command.CommandResponse;
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
+import com.sitewhere.server.asset.IAssetReloadListener;
+import com.sitewhere.server.asset.IReloadingAssetModule;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.AssetType;
 import com.sitewhere.spi.asset.IAssetModule;
@@ -32,11 +32,15 @@ import com.sitewhere.spi.command.CommandResult;
 import com.sitewhere.spi.command.ICommandResponse;
 
 /**
- * Modules that loads a list of hardware assets from an XML file on the filesystem.
+ * Modules that loads a list of hardware assets from an XML file on the filesystem. Each
+ * load builds a complete snapshot of the assets which is then published in a single
+ * step, so lookups never see a partially loaded list. The file is watched for changes and
+ * reloaded automatically unless watching is disabled.
  * 
  * @author Derek Adams
  */
-public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset> {
+public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset>,
+		IReloadingAssetModule {
 
 	/** Static logger instance */
 	private static Logger LOGGER = Logger.getLogger(FileSystemHardwareAssetModule.class);
@@ -50,15 +54,36 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 	/** Filename in SiteWhere config folder that contains hardware assets */
 	public static final String HARDWARE_CONFIG_FILENAME = "hardware-assets.xml";
 
-	/** Map of device assets by unique id */
-	protected Map<String, HardwareAsset> deviceAssetsById;
+	/** Default interval (in ms) between checks of the assets file */
+	public static final long DEFAULT_WATCH_INTERVAL_MS = 5000;
+
+	/** Default time (in ms) the assets file must stay unchanged before it is reloaded */
+	public static final long DEFAULT_WATCH_DEBOUNCE_MS = 2000;
 
-	/** Map of hardware assets by unique id */
-	protected Map<String, HardwareAsset> hardwareAssetsById;
+	/** Currently published assets */
+	protected volatile HardwareAssets assets = HardwareAssets.EMPTY;
 
 	/** Matcher used for searches */
 	protected AssetMatcher matcher = new AssetMatcher();
 
+	/** Streams hardware assets from the XML file */
+	private StreamingAssetReader<FileSystemHardwareAsset> reader;
+
+	/** Indicates whether the assets file is watched for changes */
+	private boolean watchEnabled = true;
+
+	/** Interval (in ms) between checks of the assets file */
+	private long watchIntervalMs = DEFAULT_WATCH_INTERVAL_MS;
+
+	/** Time (in ms) the assets file must stay unchanged before it is reloaded */
+	private long watchDebounceMs = DEFAULT_WATCH_DEBOUNCE_MS;
+
+	/** Reloads the assets file when it changes */
+	private AssetFileWatcher watcher;
+
+	/** Notified after the assets file is reloaded because it changed */
+	private volatile IAssetReloadListener reloadListener;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -66,12 +91,74 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 	 */
 	public void start() throws SiteWhereException {
 		reload();
+		startWatcher();
+	}
+
+	/**
+	 * Start watching the assets file if watching is enabled. A watcher left from an earlier
+	 * start is stopped first.
+	 * 
+	 * @throws SiteWhereException
+	 */
+	protected synchronized void startWatcher() throws SiteWhereException {
+		stopWatcher();
+		if (watchEnabled) {
+			watcher = new AssetFileWatcher(getConfigFile(), watchIntervalMs, watchDebounceMs, new Runnable() {
+
+				public void run() {
+					try {
+						reload();
+						IAssetReloadListener listener = reloadListener;
+						if (listener != null) {
+							listener.assetsReloaded(FileSystemHardwareAssetModule.this);
+						}
+					} catch (SiteWhereException e) {
+						LOGGER.error("Unable to reload hardware assets. Keeping current assets.", e);
+					}
+				}
+			});
+			watcher.start();
+		}
+	}
+
+	/**
+	 * Reloads list of hardware assets from the filesystem. The new assets are only
+	 * published once the whole file has loaded, so a failed load keeps the current assets.
+	 */
+	protected synchronized void reload() throws SiteWhereException {
+		File hardwareConfig = getConfigFile();
+		LOGGER.info("Loading hardware assets from: " + hardwareConfig.getAbsolutePath());
+
+		// Stream assets from XML file, converting each one as it is read.
+		if (reader == null) {
+			reader =
+					new StreamingAssetReader<FileSystemHardwareAsset>(FileSystemHardwareAsset.class,
+							"hardware-asset");
+		}
+		final Map<String, HardwareAsset> deviceAssetsById = new HashMap<String, HardwareAsset>();
+		final Map<String, HardwareAsset> hardwareAssetsById = new HashMap<String, HardwareAsset>();
+		reader.read(hardwareConfig, new StreamingAssetReader.Handler<FileSystemHardwareAsset>() {
+
+			public void handle(FileSystemHardwareAsset xmlAsset) throws SiteWhereException {
+				HardwareAsset asset = convert(xmlAsset);
+				if (xmlAsset.isDevice()) {
+					deviceAssetsById.put(asset.getId(), asset);
+				} else {
+					hardwareAssetsById.put(asset.getId(), asset);
+				}
+			}
+		});
+		this.assets = new HardwareAssets(deviceAssetsById, hardwareAssetsById, matcher);
+		showLoadResults();
 	}
 
 	/**
-	 * Reloads list of hardware assets from the filesystem.
+	 * Get the hardware assets file.
+	 * 
+	 * @return
+	 * @throws SiteWhereException if the file does not exist
 	 */
-	protected void reload() throws SiteWhereException {
+	protected File getConfigFile() throws SiteWhereException {
 		File config = SiteWhereServer.getSiteWhereConfigFolder();
 		File assetsFolder = new File(config, IFileSystemAssetModuleConstants.ASSETS_FOLDER);
 		if (!assetsFolder.exists()) {
@@ -83,47 +170,36 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 			throw new SiteWhereException("Hardware assets file missing. Looking for: "
 					+ hardwareConfig.getAbsolutePath());
 		}
-		LOGGER.info("Loading hardware assets from: " + hardwareConfig.getAbsolutePath());
+		return hardwareConfig;
+	}
 
-		// Unmarshal assets from XML file and store in data object.
-		List<HardwareAsset> assets = new ArrayList<HardwareAsset>();
-		this.deviceAssetsById = new HashMap<String, HardwareAsset>();
-		this.hardwareAssetsById = new HashMap<String, HardwareAsset>();
-		try {
-			JAXBContext jaxbContext = JAXBContext.newInstance(FileSystemHardwareAssets.class);
-			Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-			FileSystemHardwareAssets xmlAssets = (FileSystemHardwareAssets) jaxbUnmarshaller
-					.unmarshal(hardwareConfig);
-			for (FileSystemHardwareAsset xmlAsset : xmlAssets.getHardwareAssets()) {
-				HardwareAsset asset = new HardwareAsset();
-				asset.setId(xmlAsset.getId());
-				asset.setName(xmlAsset.getName());
-				asset.setDescription(xmlAsset.getDescription());
-				asset.setSku(xmlAsset.getSku());
-				asset.setImageUrl(xmlAsset.getImageUrl());
-				for (FileSystemAssetProperty xmlProperty : xmlAsset.getProperties()) {
-					asset.setProperty(xmlProperty.getName(), xmlProperty.getValue());
-				}
-				assets.add(asset);
-				if (xmlAsset.isDevice()) {
-					deviceAssetsById.put(asset.getId(), asset);
-				} else {
-					hardwareAssetsById.put(asset.getId(), asset);
-				}
-			}
-			showLoadResults();
-		} catch (Exception e) {
-			throw new SiteWhereException("Unable to unmarshal hardware assets file.", e);
+	/**
+	 * Convert an XML hardware asset to the REST model.
+	 * 
+	 * @param xmlAsset
+	 * @return
+	 */
+	protected HardwareAsset convert(FileSystemHardwareAsset xmlAsset) {
+		HardwareAsset asset = new HardwareAsset();
+		asset.setId(xmlAsset.getId());
+		asset.setName(xmlAsset.getName());
+		asset.setDescription(xmlAsset.getDescription());
+		asset.setSku(xmlAsset.getSku());
+		asset.setImageUrl(xmlAsset.getImageUrl());
+		for (FileSystemAssetProperty xmlProperty : xmlAsset.getProperties()) {
+			asset.setProperty(xmlProperty.getName(), xmlProperty.getValue());
 		}
+		return asset;
 	}
 
 	/**
 	 * Log the number of assets loaded for each type.
 	 */
 	protected void showLoadResults() {
-		String message = "Loaded " + deviceAssetsById.size() + " device assets.";
+		HardwareAssets current = assets;
+		String message = "Loaded " + current.deviceAssetsById.size() + " device assets.";
 		LOGGER.info(message);
-		message = "Loaded " + hardwareAssetsById.size() + " hardware assets.";
+		message = "Loaded " + current.hardwareAssetsById.size() + " hardware assets.";
 		LOGGER.info(message);
 	}
 
@@ -133,6 +209,28 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 	 * @see com.sitewhere.spi.asset.IAssetModule#stop()
 	 */
 	public void stop() throws SiteWhereException {
+		stopWatcher();
+	}
+
+	/**
+	 * Stop watching the assets file if a watcher is running.
+	 */
+	protected synchronized void stopWatcher() {
+		if (watcher != null) {
+			watcher.stop();
+			watcher = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.server.asset.IReloadingAssetModule#setReloadListener(com.sitewhere.
+	 * server.asset.IAssetReloadListener)
+	 */
+	public void setReloadListener(IAssetReloadListener listener) {
+		this.reloadListener = listener;
 	}
 
 	/*
@@ -175,10 +273,11 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 	 * , java.lang.String)
 	 */
 	public HardwareAsset getAssetById(AssetType type, String id) throws SiteWhereException {
+		HardwareAssets current = assets;
 		if (type == AssetType.Device) {
-			return deviceAssetsById.get(id);
+			return current.deviceAssetsById.get(id);
 		}
-		return hardwareAssetsById.get(id);
+		return current.hardwareAssetsById.get(id);
 	}
 
 	/*
@@ -189,16 +288,16 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 	 */
 	public List<HardwareAsset> search(AssetType type, String criteria) throws SiteWhereException {
 		criteria = criteria.toLowerCase();
-		List<HardwareAsset> results = new ArrayList<HardwareAsset>();
-		Map<String, HardwareAsset> cache = (type == AssetType.Device) ? deviceAssetsById : hardwareAssetsById;
+		HardwareAssets current = assets;
+		List<HardwareAsset> results;
 		if (criteria.length() == 0) {
-			results.addAll(cache.values());
+			Map<String, HardwareAsset> cache =
+					(type == AssetType.Device) ? current.deviceAssetsById : current.hardwareAssetsById;
+			results = new ArrayList<HardwareAsset>(cache.values());
 		} else {
-			for (HardwareAsset asset : cache.values()) {
-				if (matcher.isHardwareMatch(asset, criteria)) {
-					results.add(asset);
-				}
-			}
+			AssetSearchIndex<HardwareAsset> index =
+					(type == AssetType.Device) ? current.deviceAssetsIndex : current.hardwareAssetsIndex;
+			results = index.search(criteria);
 		}
 		Collections.sort(results);
 		return results;
@@ -218,4 +317,60 @@ public class FileSystemHardwareAssetModule implements IAssetModule<HardwareAsset
 			return new CommandResponse(CommandResult.Failed, e.getMessage());
 		}
 	}
+
+	public boolean isWatchEnabled() {
+		return watchEnabled;
+	}
+
+	public void setWatchEnabled(boolean watchEnabled) {
+		this.watchEnabled = watchEnabled;
+	}
+
+	public long getWatchIntervalMs() {
+		return watchIntervalMs;
+	}
+
+	public void setWatchIntervalMs(long watchIntervalMs) {
+		this.watchIntervalMs = watchIntervalMs;
+	}
+
+	public long getWatchDebounceMs() {
+		return watchDebounceMs;
+	}
+
+	public void setWatchDebounceMs(long watchDebounceMs) {
+		this.watchDebounceMs = watchDebounceMs;
+	}
+
+	/**
+	 * Immutable snapshot of loaded hardware assets and their search indexes.
+	 * 
+	 * @author Derek
+	 */
+	protected static class HardwareAssets {
+
+		/** Snapshot used before the first load */
+		private static final HardwareAssets EMPTY = new HardwareAssets(new HashMap<String, HardwareAsset>(),
+				new HashMap<String, HardwareAsset>(), new AssetMatcher());
+
+		/** Map of device assets by unique id */
+		protected final Map<String, HardwareAsset> deviceAssetsById;
+
+		/** Map of hardware assets by unique id */
+		protected final Map<String, HardwareAsset> hardwareAssetsById;
+
+		/** Search index for device assets */
+		protected final AssetSearchIndex<HardwareAsset> deviceAssetsIndex;
+
+		/** Search index for hardware assets */
+		protected final AssetSearchIndex<HardwareAsset> hardwareAssetsIndex;
+
+		public HardwareAssets(Map<String, HardwareAsset> deviceAssetsById,
+				Map<String, HardwareAsset> hardwareAssetsById, AssetMatcher matcher) {
+			this.deviceAssetsById = Collections.unmodifiableMap(deviceAssetsById);
+			this.hardwareAssetsById = Collections.unmodifiableMap(hardwareAssetsById);
+			this.deviceAssetsIndex = AssetSearchIndex.forHardware(deviceAssetsById.values(), matcher);
+			this.hardwareAssetsIndex = AssetSearchIndex.forHardware(hardwareAssetsById.values(), matcher);
+		}
+	}
 }
\ No newline at end of file
@@ -11,19 +11,20 @@ package com.sitewhere.server.asset.filesystem;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Unmarshaller;
-
 import org.apache.log4j.Logger;
 
 import com.sitewhere.rest.model.asset.PersonAsset;
 import com.sitewhere.rest.model.command.CommandResponse;
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
+import com.sitewhere.server.asset.IAssetReloadListener;
+import com.sitewhere.server.asset.IReloadingAssetModule;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.AssetType;
 import com.sitewhere.spi.asset.IAssetModule;
@@ -31,11 +32,15 @@ import com.sitewhere.spi.command.CommandResult;
 import com.sitewhere.spi.command.ICommandResponse;
 
 /**
- * Modules that loads a list of person assets from an XML file on the filesystem.
+ * Modules that loads a list of person assets from an XML file on the filesystem. Each
+ * load builds a complete snapshot of the assets which is then published in a single
+ * step, so lookups never see a partially loaded list. The file is watched for changes and
+ * reloaded automatically unless watching is disabled.
  * 
  * @author Derek Adams
  */
-public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
+public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset>,
+		IReloadingAssetModule {
 
 	/** Static logger instance */
 	private static Logger LOGGER = Logger.getLogger(FileSystemPersonAssetModule.class);
@@ -49,12 +54,36 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 	/** Filename in SiteWhere config folder that contains person assets */
 	public static final String PERSON_CONFIG_FILENAME = "person-assets.xml";
 
-	/** Map of assets by unique id */
-	protected Map<String, PersonAsset> assetsById;
+	/** Default interval (in ms) between checks of the assets file */
+	public static final long DEFAULT_WATCH_INTERVAL_MS = 5000;
+
+	/** Default time (in ms) the assets file must stay unchanged before it is reloaded */
+	public static final long DEFAULT_WATCH_DEBOUNCE_MS = 2000;
+
+	/** Currently published assets */
+	protected volatile PersonAssets assets = PersonAssets.EMPTY;
 
 	/** Matcher used for searches */
 	protected AssetMatcher matcher = new AssetMatcher();
 
+	/** Streams person assets from the XML file */
+	private StreamingAssetReader<FileSystemPersonAsset> reader;
+
+	/** Indicates whether the assets file is watched for changes */
+	private boolean watchEnabled = true;
+
+	/** Interval (in ms) between checks of the assets file */
+	private long watchIntervalMs = DEFAULT_WATCH_INTERVAL_MS;
+
+	/** Time (in ms) the assets file must stay unchanged before it is reloaded */
+	private long watchDebounceMs = DEFAULT_WATCH_DEBOUNCE_MS;
+
+	/** Reloads the assets file when it changes */
+	private AssetFileWatcher watcher;
+
+	/** Notified after the assets file is reloaded because it changed */
+	private volatile IAssetReloadListener reloadListener;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -62,12 +91,69 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 	 */
 	public void start() throws SiteWhereException {
 		reload();
+		startWatcher();
+	}
+
+	/**
+	 * Start watching the assets file if watching is enabled. A watcher left from an earlier
+	 * start is stopped first.
+	 * 
+	 * @throws SiteWhereException
+	 */
+	protected synchronized void startWatcher() throws SiteWhereException {
+		stopWatcher();
+		if (watchEnabled) {
+			watcher = new AssetFileWatcher(getConfigFile(), watchIntervalMs, watchDebounceMs, new Runnable() {
+
+				public void run() {
+					try {
+						reload();
+						IAssetReloadListener listener = reloadListener;
+						if (listener != null) {
+							listener.assetsReloaded(FileSystemPersonAssetModule.this);
+						}
+					} catch (SiteWhereException e) {
+						LOGGER.error("Unable to reload person assets. Keeping current assets.", e);
+					}
+				}
+			});
+			watcher.start();
+		}
 	}
 
 	/**
-	 * Reloads list of person assets from the filesystem.
+	 * Reloads list of person assets from the filesystem. The new assets are only published
+	 * once the whole file has loaded, so a failed load keeps the current assets.
 	 */
-	protected void reload() throws SiteWhereException {
+	protected synchronized void reload() throws SiteWhereException {
+		File personConfig = getConfigFile();
+		LOGGER.info("Loading person assets from: " + personConfig.getAbsolutePath());
+
+		// Stream assets from XML file, converting each one as it is read.
+		if (reader == null) {
+			reader =
+					new StreamingAssetReader<FileSystemPersonAsset>(FileSystemPersonAsset.class,
+							"person-asset");
+		}
+		final Map<String, PersonAsset> assetsById = new HashMap<String, PersonAsset>();
+		reader.read(personConfig, new StreamingAssetReader.Handler<FileSystemPersonAsset>() {
+
+			public void handle(FileSystemPersonAsset xmlAsset) throws SiteWhereException {
+				PersonAsset asset = convert(xmlAsset);
+				assetsById.put(asset.getId(), asset);
+			}
+		});
+		this.assets = new PersonAssets(assetsById, matcher);
+		showLoadResults();
+	}
+
+	/**
+	 * Get the person assets file.
+	 * 
+	 * @return
+	 * @throws SiteWhereException if the file does not exist
+	 */
+	protected File getConfigFile() throws SiteWhereException {
 		File config = SiteWhereServer.getSiteWhereConfigFolder();
 		File assetsFolder = new File(config, IFileSystemAssetModuleConstants.ASSETS_FOLDER);
 		if (!assetsFolder.exists()) {
@@ -79,47 +165,39 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 			throw new SiteWhereException("Person assets file missing. Looking for: "
 					+ personConfig.getAbsolutePath());
 		}
-		LOGGER.info("Loading person assets from: " + personConfig.getAbsolutePath());
+		return personConfig;
+	}
 
-		// Unmarshal assets from XML file and store in data object.
-		List<PersonAsset> assets = new ArrayList<PersonAsset>();
-		Map<String, PersonAsset> assetsById = new HashMap<String, PersonAsset>();
-		try {
-			JAXBContext jaxbContext = JAXBContext.newInstance(FileSystemPersonAssets.class);
-			Unmarshaller jaxbUnmarshaller = jaxbContext.createUnmarshaller();
-			FileSystemPersonAssets xmlAssets = (FileSystemPersonAssets) jaxbUnmarshaller
-					.unmarshal(personConfig);
-			for (FileSystemPersonAsset xmlAsset : xmlAssets.getPersonAssets()) {
-				PersonAsset asset = new PersonAsset();
-				asset.setId(xmlAsset.getId());
-				asset.setName(xmlAsset.getName());
-				asset.setUserName(xmlAsset.getUserName());
-				asset.setEmailAddress(xmlAsset.getEmailAddress());
-				asset.setPhotoUrl(xmlAsset.getPhotoUrl());
-				for (FileSystemAssetProperty xmlProperty : xmlAsset.getProperties()) {
-					asset.setProperty(xmlProperty.getName(), xmlProperty.getValue());
-				}
-				if (xmlAsset.getRoles() != null) {
-					List<String> roles = xmlAsset.getRoles().getRoles();
-					for (String role : roles) {
-						asset.getRoles().add(role);
-					}
-				}
-				assets.add(asset);
-				assetsById.put(asset.getId(), asset);
+	/**
+	 * Convert an XML person asset to the REST model.
+	 * 
+	 * @param xmlAsset
+	 * @return
+	 */
+	protected PersonAsset convert(FileSystemPersonAsset xmlAsset) {
+		PersonAsset asset = new PersonAsset();
+		asset.setId(xmlAsset.getId());
+		asset.setName(xmlAsset.getName());
+		asset.setUserName(xmlAsset.getUserName());
+		asset.setEmailAddress(xmlAsset.getEmailAddress());
+		asset.setPhotoUrl(xmlAsset.getPhotoUrl());
+		for (FileSystemAssetProperty xmlProperty : xmlAsset.getProperties()) {
+			asset.setProperty(xmlProperty.getName(), xmlProperty.getValue());
+		}
+		if (xmlAsset.getRoles() != null) {
+			List<String> roles = xmlAsset.getRoles().getRoles();
+			for (String role : roles) {
+				asset.getRoles().add(role);
 			}
-			this.assetsById = assetsById;
-			showLoadResults();
-		} catch (Exception e) {
-			throw new SiteWhereException("Unable to unmarshal person assets file.", e);
 		}
+		return asset;
 	}
 
 	/**
 	 * Log the number of assets loaded for each type.
 	 */
 	protected void showLoadResults() {
-		String message = "Loaded " + assetsById.size() + " assets.";
+		String message = "Loaded " + assets.assetsById.size() + " assets.";
 		LOGGER.info(message);
 	}
 
@@ -129,6 +207,28 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 	 * @see com.sitewhere.spi.asset.IAssetModule#stop()
 	 */
 	public void stop() throws SiteWhereException {
+		stopWatcher();
+	}
+
+	/**
+	 * Stop watching the assets file if a watcher is running.
+	 */
+	protected synchronized void stopWatcher() {
+		if (watcher != null) {
+			watcher.stop();
+			watcher = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.server.asset.IReloadingAssetModule#setReloadListener(com.sitewhere.
+	 * server.asset.IAssetReloadListener)
+	 */
+	public void setReloadListener(IAssetReloadListener listener) {
+		this.reloadListener = listener;
 	}
 
 	/*
@@ -171,7 +271,7 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 	 * , java.lang.String)
 	 */
 	public PersonAsset getAssetById(AssetType type, String id) throws SiteWhereException {
-		return assetsById.get(id);
+		return assets.assetsById.get(id);
 	}
 
 	/*
@@ -182,17 +282,13 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 	 */
 	public List<PersonAsset> search(AssetType type, String criteria) throws SiteWhereException {
 		criteria = criteria.toLowerCase();
+		PersonAssets current = assets;
 		List<PersonAsset> results = new ArrayList<PersonAsset>();
 		if (criteria.length() == 0) {
-			results.addAll(assetsById.values());
+			results.addAll(current.assetsById.values());
 			return results;
 		}
-		for (PersonAsset asset : assetsById.values()) {
-			if (matcher.isPersonMatch(asset, criteria)) {
-				results.add(asset);
-			}
-		}
-		return results;
+		return current.assetsIndex.search(criteria);
 	}
 
 	/*
@@ -209,4 +305,51 @@ public class FileSystemPersonAssetModule implements IAssetModule<PersonAsset> {
 			return new CommandResponse(CommandResult.Failed, e.getMessage());
 		}
 	}
+
+	public boolean isWatchEnabled() {
+		return watchEnabled;
+	}
+
+	public void setWatchEnabled(boolean watchEnabled) {
+		this.watchEnabled = watchEnabled;
+	}
+
+	public long getWatchIntervalMs() {
+		return watchIntervalMs;
+	}
+
+	public void setWatchIntervalMs(long watchIntervalMs) {
+		this.watchIntervalMs = watchIntervalMs;
+	}
+
+	public long getWatchDebounceMs() {
+		return watchDebounceMs;
+	}
+
+	public void setWatchDebounceMs(long watchDebounceMs) {
+		this.watchDebounceMs = watchDebounceMs;
+	}
+
+	/**
+	 * Immutable snapshot of loaded person assets and their search index.
+	 * 
+	 * @author Derek
+	 */
+	protected static class PersonAssets {
+
+		/** Snapshot used before the first load */
+		private static final PersonAssets EMPTY = new PersonAssets(new HashMap<String, PersonAsset>(),
+				new AssetMatcher());
+
+		/** Map of assets by unique id */
+		protected final Map<String, PersonAsset> assetsById;
+
+		/** Search index for person assets */
+		protected final AssetSearchIndex<PersonAsset> assetsIndex;
+
+		public PersonAssets(Map<String, PersonAsset> assetsById, AssetMatcher matcher) {
+			this.assetsById = Collections.unmodifiableMap(assetsById);
+			this.assetsIndex = AssetSearchIndex.forPeople(assetsById.values(), matcher);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+/*
+ * StreamingAssetReader.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.sitewhere.spi.SiteWhereException;
+
+/**
+ * Reads repeated elements from a filesystem asset file one at a time. The file is walked
+ * with a StAX reader and only the current element is unmarshalled, so the whole document
+ * is never held in memory. The JAXB context is created once and reused for every read.
+ * 
+ * @author Derek
+ * 
+ * @param <X> JAXB type of the repeated element
+ */
+public class StreamingAssetReader<X> {
+
+	/** Shared factory for StAX readers */
+	private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+	/** JAXB type of the repeated element */
+	private final Class<X> type;
+
+	/** Local name of the repeated element */
+	private final String elementName;
+
+	/** Context reused for each read */
+	private final JAXBContext context;
+
+	public StreamingAssetReader(Class<X> type, String elementName) throws SiteWhereException {
+		this.type = type;
+		this.elementName = elementName;
+		try {
+			this.context = JAXBContext.newInstance(type);
+		} catch (JAXBException e) {
+			throw new SiteWhereException("Unable to create JAXB context for " + type.getName() + ".", e);
+		}
+	}
+
+	/**
+	 * Create the StAX factory with DTDs and external entities disabled.
+	 * 
+	 * @return
+	 */
+	protected static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+
+	/**
+	 * Unmarshal each repeated element in a file and pass it to the handler.
+	 * 
+	 * @param file
+	 * @param handler
+	 * @return number of elements read
+	 * @throws SiteWhereException
+	 */
+	public int read(File file, Handler<X> handler) throws SiteWhereException {
+		InputStream input = null;
+		XMLStreamReader reader = null;
+		int count = 0;
+		try {
+			input = new BufferedInputStream(new FileInputStream(file));
+			reader = INPUT_FACTORY.createXMLStreamReader(input);
+			Unmarshaller unmarshaller = context.createUnmarshaller();
+			while (reader.hasNext()) {
+				if ((reader.getEventType() == XMLStreamConstants.START_ELEMENT)
+						&& (elementName.equals(reader.getLocalName()))) {
+					handler.handle(unmarshaller.unmarshal(reader, type).getValue());
+					count++;
+				} else {
+					reader.next();
+				}
+			}
+			return count;
+		} catch (IOException e) {
+			throw new SiteWhereException("Unable to read asset file: " + file.getAbsolutePath(), e);
+		} catch (XMLStreamException e) {
+			throw new SiteWhereException("Unable to parse asset file: " + file.getAbsolutePath(), e);
+		} catch (JAXBException e) {
+			throw new SiteWhereException("Unable to unmarshal asset from file: " + file.getAbsolutePath(), e);
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (XMLStreamException e) {
+					// Ignore errors on close.
+				}
+			}
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// Ignore errors on close.
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receives elements as they are read.
+	 * 
+	 * @author Derek
+	 * 
+	 * @param <X>
+	 */
+	public static interface Handler<X> {
+
+		/**
+		 * Handle a single unmarshalled element.
+		 * 
+		 * @param element
+		 * @throws SiteWhereException
+		 */
+		public void handle(X element) throws SiteWhereException;
+	}
+}
@@ -20,6 +20,15 @@ public interface IScimFields {
 	/** Resources section */
 	public static final String RESOURCES = "Resources";
 
+	/** Total number of results across all pages */
+	public static final String TOTAL_RESULTS = "totalResults";
+
+	/** Query parameter for 1-based index of first result in a page */
+	public static final String START_INDEX = "startIndex";
+
+	/** Query parameter for number of results in a page */
+	public static final String COUNT = "count";
+
 	/** Username field */
 	public static final String ID = "id";
 
@@ -25,11 +25,14 @@ import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.log4j.Logger;
 
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sitewhere.rest.model.asset.PersonAsset;
 import com.sitewhere.rest.model.command.CommandResponse;
 import com.sitewhere.server.asset.AssetMatcher;
+import com.sitewhere.server.asset.AssetSearchIndex;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.asset.AssetType;
 import com.sitewhere.spi.asset.IAssetModule;
@@ -61,9 +64,15 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 	/** Default password for basic auth */
 	private static final String DEFAULT_AUTH_PASSWORD = "admin";
 
+	/** Default number of resources requested per page */
+	private static final int DEFAULT_PAGE_SIZE = 500;
+
 	/** URL used to access user info */
 	private String userUrl = DEFAULT_URL;
 
+	/** Number of resources requested per page */
+	private int pageSize = DEFAULT_PAGE_SIZE;
+
 	/** Use CXF web client to send requests */
 	private WebClient client;
 
@@ -71,11 +80,15 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 	private ObjectMapper mapper = new ObjectMapper();
 
 	/** Cached asset map */
-	private Map<String, PersonAsset> assetCache = new HashMap<String, PersonAsset>();
+	private volatile Map<String, PersonAsset> assetCache = new HashMap<String, PersonAsset>();
 
 	/** Matcher used for searches */
 	protected AssetMatcher matcher = new AssetMatcher();
 
+	/** Search index over cached assets */
+	protected volatile AssetSearchIndex<PersonAsset> assetIndex =
+			AssetSearchIndex.forPeople(assetCache.values(), matcher);
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -152,12 +165,7 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 			results.addAll(assetCache.values());
 			return results;
 		}
-		for (PersonAsset asset : assetCache.values()) {
-			if (matcher.isPersonMatch(asset, criteria)) {
-				results.add(asset);
-			}
-		}
-		return results;
+		return assetIndex.search(criteria);
 	}
 
 	/*
@@ -188,44 +196,115 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 	}
 
 	/**
-	 * Make remote call to list all user assets, then parse and cache them.
+	 * Make paged remote calls to list all user assets, then parse and cache them. Each page
+	 * is streamed from the response and only one resource at a time is read into a tree.
+	 * Assets are collected into a new map that replaces the cache once all pages have
+	 * loaded, so searches see the previous data until the refresh completes.
 	 * 
 	 * @throws SiteWhereException
 	 */
 	protected ICommandResponse cacheAssetData() throws SiteWhereException {
-		assetCache.clear();
-
 		LOGGER.info("Caching search data.");
-		int totalAssets = 0;
 		long startTime = System.currentTimeMillis();
+		Map<String, PersonAsset> loaded = new HashMap<String, PersonAsset>();
+		int totalAssets = 0;
+		int startIndex = 1;
+		while (true) {
+			ScimPage page = loadPage(startIndex, loaded);
+			if ((startIndex == 1) && (!page.hasResources)) {
+				String message = "SCIM JSON response did not contain a 'resources' section.";
+				LOGGER.info(message);
+				return new CommandResponse(CommandResult.Failed, message);
+			}
+			totalAssets += page.resourceCount;
+			LOGGER.debug("Loaded " + totalAssets + " SCIM resources.");
+
+			// Stop on an empty page, when the server does not page or after the last page.
+			if ((page.resourceCount == 0) || (page.totalResults < 0) || (page.resourceCount > pageSize)
+					|| (totalAssets >= page.totalResults)) {
+				break;
+			}
+			startIndex += page.resourceCount;
+		}
+		this.assetIndex = AssetSearchIndex.forPeople(loaded.values(), matcher);
+		this.assetCache = loaded;
+		long totalTime = System.currentTimeMillis() - startTime;
+		String message = "Cached " + totalAssets + " assets in " + totalTime + "ms.";
+		LOGGER.info(message);
+		return new CommandResponse(CommandResult.Successful, message);
+	}
+
+	/**
+	 * Request a single page of SCIM resources and stream the results into a map.
+	 * 
+	 * @param startIndex
+	 * @param loaded
+	 * @return
+	 * @throws SiteWhereException
+	 */
+	protected ScimPage loadPage(int startIndex, Map<String, PersonAsset> loaded) throws SiteWhereException {
 		WebClient caller = WebClient.fromClient(client);
 		caller.accept(MediaType.APPLICATION_JSON_TYPE);
+		caller.query(IScimFields.START_INDEX, startIndex);
+		caller.query(IScimFields.COUNT, pageSize);
 		Response response = caller.get();
-		Object entity = response.getEntity();
+		InputStream input = (InputStream) response.getEntity();
+		if (response.getStatus() >= 300) {
+			closeQuietly(null, input);
+			throw new SiteWhereException("SCIM request for startIndex " + startIndex
+					+ " failed with HTTP status " + response.getStatus() + ".");
+		}
+		ScimPage page = new ScimPage();
+		JsonParser parser = null;
 		try {
-			JsonNode json = mapper.readTree((InputStream) entity);
-			JsonNode resources = json.get(IScimFields.RESOURCES);
-			if (resources == null) {
-				String message = "SCIM JSON response did not contain a 'resources' section.";
-				LOGGER.info(message);
-				return new CommandResponse(CommandResult.Failed, message);
+			parser = mapper.getFactory().createParser(input);
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new SiteWhereException("SCIM response was not a JSON object.");
 			}
-			Iterator<JsonNode> it = resources.elements();
-			while (it.hasNext()) {
-				JsonNode resource = it.next();
-				PersonAsset asset = parse(resource);
-				assetCache.put(asset.getId(), asset);
-				totalAssets++;
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+				if (IScimFields.TOTAL_RESULTS.equals(field) && (value == JsonToken.VALUE_NUMBER_INT)) {
+					page.totalResults = parser.getIntValue();
+				} else if (IScimFields.RESOURCES.equals(field) && (value == JsonToken.START_ARRAY)) {
+					page.hasResources = true;
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						JsonNode resource = mapper.readTree(parser);
+						PersonAsset asset = parse(resource);
+						loaded.put(asset.getId(), asset);
+						page.resourceCount++;
+					}
+				} else {
+					parser.skipChildren();
+				}
 			}
+			return page;
 		} catch (JsonParseException e) {
 			throw new SiteWhereException("Unable to parse asset response.", e);
 		} catch (IOException e) {
 			throw new SiteWhereException("Unable to read asset response.", e);
+		} finally {
+			closeQuietly(parser, input);
+		}
+	}
+
+	/**
+	 * Close the parser and stream for a SCIM response, logging any errors.
+	 * 
+	 * @param parser
+	 * @param input
+	 */
+	protected void closeQuietly(JsonParser parser, InputStream input) {
+		try {
+			if (parser != null) {
+				parser.close();
+			}
+			if (input != null) {
+				input.close();
+			}
+		} catch (IOException e) {
+			LOGGER.warn("Unable to close SCIM response.", e);
 		}
-		long totalTime = System.currentTimeMillis() - startTime;
-		String message = "Cached " + totalAssets + " assets in " + totalTime + "ms.";
-		LOGGER.info(message);
-		return new CommandResponse(CommandResult.Successful, message);
 	}
 
 	/**
@@ -240,27 +319,24 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 		if (id == null) {
 			throw new SiteWhereException("SCIM resource does not have an id.");
 		}
+		asset.setId(id.textValue());
 		asset.setProperty(IWso2ScimFields.PROP_ASSET_ID, id.textValue());
 
 		JsonNode username = resource.get(IScimFields.USERNAME);
 		if (username != null) {
+			asset.setUserName(username.textValue());
 			asset.setProperty(IWso2ScimFields.PROP_USERNAME, username.textValue());
 		}
 
 		JsonNode profileUrl = resource.get(IScimFields.PROFILE_URL);
 		if (profileUrl != null) {
+			asset.setPhotoUrl(profileUrl.textValue());
 			asset.setProperty(IWso2ScimFields.PROP_PROFILE_URL, profileUrl.textValue());
 		}
 
 		parseName(resource, asset);
 		parseEmail(resource, asset);
 
-		asset.setId(IWso2ScimFields.PROP_ASSET_ID);
-		asset.setName(IWso2ScimFields.PROP_NAME);
-		asset.setEmailAddress(IWso2ScimFields.PROP_EMAIL_ADDRESS);
-		asset.setUserName(IWso2ScimFields.PROP_USERNAME);
-		asset.setPhotoUrl(IWso2ScimFields.PROP_PROFILE_URL);
-
 		return asset;
 	}
 
@@ -286,6 +362,7 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 				full += familyValue;
 				asset.setProperty(IScimFields.FAMILY_NAME, familyValue);
 			}
+			asset.setName(full.trim());
 			asset.setProperty(IWso2ScimFields.PROP_NAME, full.trim());
 		}
 	}
@@ -303,7 +380,11 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 			Iterator<JsonNode> it = emails.elements();
 			while (it.hasNext()) {
 				String email = it.next().textValue();
+				if (index == 1) {
+					asset.setEmailAddress(email);
+				}
 				asset.setProperty("emailAddress" + index, email);
+				index++;
 			}
 		}
 	}
@@ -315,4 +396,29 @@ public class Wso2ScimAssetModule implements IAssetModule<PersonAsset> {
 	public void setUserUrl(String userUrl) {
 		this.userUrl = userUrl;
 	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public void setPageSize(int pageSize) {
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Summary of a single page of SCIM results.
+	 * 
+	 * @author Derek
+	 */
+	protected static class ScimPage {
+
+		/** Total results reported by the server or -1 if not reported */
+		private int totalResults = -1;
+
+		/** Number of resources in the page */
+		private int resourceCount;
+
+		/** Indicates whether the page contained a resources section */
+		private boolean hasResources;
+	}
 }
\ No newline at end of file
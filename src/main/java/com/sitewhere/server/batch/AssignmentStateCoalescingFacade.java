@@ -0,0 +1,370 @@
+/*
+ * AssignmentStateCoalescingFacade.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.batch;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.core.DaemonThreadFactory;
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.common.MetadataProvider;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.DeviceAssignmentState;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.DeviceManagementAdapter;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceEventBatch;
+import com.sitewhere.spi.device.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest;
+
+/**
+ * Wraps a device management implementation in a facade that coalesces assignment state
+ * updates in memory. Incoming batches are reduced to the latest location, the latest
+ * measurement for each name and the latest alert for each type using the same rules as
+ * {@link SiteWherePersistence#assignmentStateUpdateLogic(IDeviceAssignment, IDeviceEventBatch)}
+ * . The merged batch is passed to the delegate on a fixed interval and on shutdown, so the
+ * persisted state is rewritten once per interval rather than once per update.
+ * <p>
+ * The assignment is read from the delegate once when it first has pending updates in an
+ * interval. Assignments returned from updates are copies of it with the pending updates
+ * merged into the state, so they match what will be persisted by the next write. A write
+ * that fails is merged back into the pending state and retried on the next interval.
+ * After the configured number of attempts it is dropped and counted in the
+ * {@link #DROPPED_UPDATES_METER} meter.
+ * 
+ * @author Derek
+ */
+public class AssignmentStateCoalescingFacade extends DeviceManagementAdapter {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(AssignmentStateCoalescingFacade.class);
+
+	/** Default interval (in ms) between state writes */
+	public static final long DEFAULT_FLUSH_INTERVAL_MS = 5000;
+
+	/** Default number of times a state update is written before it is dropped */
+	public static final int DEFAULT_MAX_FLUSH_ATTEMPTS = 3;
+
+	/** Name of the meter counting state updates dropped after failed writes */
+	public static final String DROPPED_UPDATES_METER = MetricRegistry.name(
+			AssignmentStateCoalescingFacade.class, "droppedUpdates");
+
+	/** Interval (in ms) between state writes */
+	private long flushIntervalMs = DEFAULT_FLUSH_INTERVAL_MS;
+
+	/** Number of times a state update is written before it is dropped */
+	private int maxFlushAttempts = DEFAULT_MAX_FLUSH_ATTEMPTS;
+
+	/** Pending state updates by assignment token */
+	private ConcurrentHashMap<String, PendingState> pending = new ConcurrentHashMap<String, PendingState>();
+
+	/** Writes coalesced state on an interval */
+	private ScheduledExecutorService flusher;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#start()
+	 */
+	public void start() throws SiteWhereException {
+		super.start();
+		flusher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"SiteWhere Assignment State Flusher"));
+		flusher.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				flushAll();
+			}
+		}, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#stop()
+	 */
+	public void stop() throws SiteWhereException {
+		if (flusher != null) {
+			flusher.shutdown();
+			try {
+				flusher.awaitTermination(flushIntervalMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (int i = 0; (i < maxFlushAttempts) && (!pending.isEmpty()); i++) {
+			flushAll();
+		}
+		super.stop();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentState(java.lang
+	 * .String, com.sitewhere.spi.device.IDeviceEventBatch)
+	 */
+	public IDeviceAssignment updateDeviceAssignmentState(String token, IDeviceEventBatch batch)
+			throws SiteWhereException {
+		while (true) {
+			PendingState state = getPendingState(token);
+			IDeviceAssignment assignment = state.assignment;
+			if (assignment == null) {
+				assignment = super.getDeviceAssignmentByToken(token);
+				if (assignment == null) {
+					throw new SiteWhereException("Device assignment not found: " + token);
+				}
+			}
+			DeviceEventBatch merged;
+			synchronized (state) {
+				if (state.closed) {
+					continue;
+				}
+				if (state.assignment == null) {
+					state.assignment = assignment;
+				}
+				assignment = state.assignment;
+				state.merge(batch);
+				merged = state.toBatch();
+			}
+			return withState(assignment, SiteWherePersistence.assignmentStateUpdateLogic(assignment, merged));
+		}
+	}
+
+	/**
+	 * Copy an assignment, replacing its state.
+	 * 
+	 * @param source
+	 * @param state
+	 * @return
+	 */
+	protected DeviceAssignment withState(IDeviceAssignment source, DeviceAssignmentState state) {
+		DeviceAssignment copy = new DeviceAssignment();
+		copy.setToken(source.getToken());
+		copy.setSiteToken(source.getSiteToken());
+		copy.setDeviceHardwareId(source.getDeviceHardwareId());
+		copy.setAssignmentType(source.getAssignmentType());
+		copy.setAssetId(source.getAssetId());
+		copy.setActiveDate(source.getActiveDate());
+		copy.setReleasedDate(source.getReleasedDate());
+		copy.setStatus(source.getStatus());
+		copy.setCreatedDate(source.getCreatedDate());
+		copy.setCreatedBy(source.getCreatedBy());
+		copy.setUpdatedDate(source.getUpdatedDate());
+		copy.setUpdatedBy(source.getUpdatedBy());
+		copy.setDeleted(source.isDeleted());
+		MetadataProvider.copy(source, copy);
+		copy.setState(state);
+		return copy;
+	}
+
+	/**
+	 * Get the pending state for an assignment, creating it if necessary.
+	 * 
+	 * @param token
+	 * @return
+	 */
+	protected PendingState getPendingState(String token) {
+		PendingState state = pending.get(token);
+		if (state == null) {
+			PendingState created = new PendingState();
+			state = pending.putIfAbsent(token, created);
+			if (state == null) {
+				state = created;
+			}
+		}
+		return state;
+	}
+
+	/**
+	 * Write all pending state updates to the delegate.
+	 */
+	protected void flushAll() {
+		for (Map.Entry<String, PendingState> entry : pending.entrySet()) {
+			PendingState state = entry.getValue();
+			synchronized (state) {
+				if (state.closed) {
+					continue;
+				}
+				state.closed = true;
+			}
+			pending.remove(entry.getKey(), state);
+			flush(entry.getKey(), state);
+		}
+	}
+
+	/**
+	 * Write a single coalesced state update to the delegate. An update that fails is
+	 * re-queued until it has been attempted the maximum number of times and is then
+	 * dropped.
+	 * 
+	 * @param token
+	 * @param state
+	 */
+	protected void flush(String token, PendingState state) {
+		DeviceEventBatch batch = state.toBatch();
+		if (DeviceEventBatches.size(batch) == 0) {
+			return;
+		}
+		try {
+			super.updateDeviceAssignmentState(token, batch);
+			return;
+		} catch (SiteWhereException e) {
+			LOGGER.error("Unable to write coalesced state for assignment: " + token, e);
+		} catch (Throwable t) {
+			LOGGER.error("Unhandled exception writing coalesced state for assignment: " + token, t);
+		}
+		state.attempts++;
+		if (state.attempts < maxFlushAttempts) {
+			requeue(token, state, batch);
+		} else {
+			LOGGER.error("Dropped coalesced state for assignment " + token + " after " + state.attempts
+					+ " failed attempts.");
+			SiteWhereServer.getInstance().getMetricRegistry().meter(DROPPED_UPDATES_METER).mark();
+		}
+	}
+
+	/**
+	 * Merge a failed update back into the pending state for the assignment so it is
+	 * written again with the next flush. Updates that arrived since are newer and win.
+	 * 
+	 * @param token
+	 * @param failed
+	 * @param batch
+	 */
+	protected void requeue(String token, PendingState failed, DeviceEventBatch batch) {
+		while (true) {
+			PendingState state = getPendingState(token);
+			synchronized (state) {
+				if (state.closed) {
+					continue;
+				}
+				state.merge(batch);
+				state.attempts = Math.max(state.attempts, failed.attempts);
+			}
+			break;
+		}
+	}
+
+	public long getFlushIntervalMs() {
+		return flushIntervalMs;
+	}
+
+	public void setFlushIntervalMs(long flushIntervalMs) {
+		this.flushIntervalMs = flushIntervalMs;
+	}
+
+	public int getMaxFlushAttempts() {
+		return maxFlushAttempts;
+	}
+
+	public void setMaxFlushAttempts(int maxFlushAttempts) {
+		this.maxFlushAttempts = maxFlushAttempts;
+	}
+
+	/**
+	 * State updates merged for a single assignment.
+	 * 
+	 * @author Derek
+	 */
+	private static class PendingState {
+
+		/** Latest location */
+		private IDeviceLocationCreateRequest location;
+
+		/** Request holding the latest value for each measurement name */
+		private Map<String, IDeviceMeasurementsCreateRequest> measurements =
+				new LinkedHashMap<String, IDeviceMeasurementsCreateRequest>();
+
+		/** Latest alert for each alert type */
+		private Map<String, IDeviceAlertCreateRequest> alerts =
+				new LinkedHashMap<String, IDeviceAlertCreateRequest>();
+
+		/** Assignment read when the first update arrived, with the persisted state */
+		private volatile IDeviceAssignment assignment;
+
+		/** Indicates the state has been detached and may not accept more updates */
+		private boolean closed = false;
+
+		/** Number of failed attempts to write the state */
+		private int attempts = 0;
+
+		/**
+		 * Merge a batch into the pending state. A newer event only replaces an older one
+		 * if its date is strictly later, so the first of several equal dates wins.
+		 * 
+		 * @param batch
+		 */
+		private void merge(IDeviceEventBatch batch) {
+			if (batch.getLocations() != null) {
+				for (IDeviceLocationCreateRequest request : batch.getLocations()) {
+					if ((location == null)
+							|| ((request.getEventDate() != null) && (request.getEventDate().after(location.getEventDate())))) {
+						location = request;
+					}
+				}
+			}
+			if (batch.getMeasurements() != null) {
+				for (IDeviceMeasurementsCreateRequest request : batch.getMeasurements()) {
+					for (String key : request.getMeasurements().keySet()) {
+						IDeviceMeasurementsCreateRequest existing = measurements.get(key);
+						if ((existing == null) || (existing.getEventDate().before(request.getEventDate()))) {
+							measurements.put(key, request);
+						}
+					}
+				}
+			}
+			if (batch.getAlerts() != null) {
+				for (IDeviceAlertCreateRequest request : batch.getAlerts()) {
+					IDeviceAlertCreateRequest existing = alerts.get(request.getType());
+					if ((existing == null) || (existing.getEventDate().before(request.getEventDate()))) {
+						alerts.put(request.getType(), request);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Build a batch containing only the winning events. A measurements request that
+		 * wins for several names is only included once.
+		 * 
+		 * @return
+		 */
+		private DeviceEventBatch toBatch() {
+			DeviceEventBatch batch = new DeviceEventBatch();
+			if (location != null) {
+				batch.getLocations().add(DeviceEventBatches.toLocation(location));
+			}
+			Map<IDeviceMeasurementsCreateRequest, Boolean> added =
+					new IdentityHashMap<IDeviceMeasurementsCreateRequest, Boolean>();
+			for (IDeviceMeasurementsCreateRequest request : measurements.values()) {
+				if (added.put(request, Boolean.TRUE) == null) {
+					batch.getMeasurements().add(DeviceEventBatches.toMeasurements(request));
+				}
+			}
+			for (IDeviceAlertCreateRequest request : alerts.values()) {
+				batch.getAlerts().add(DeviceEventBatches.toAlert(request));
+			}
+			return batch;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * DeviceEventBatches.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.batch;
+
+import com.sitewhere.rest.model.common.MetadataProvider;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.rest.model.device.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.request.DeviceLocationCreateRequest;
+import com.sitewhere.rest.model.device.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.IDeviceEventBatch;
+import com.sitewhere.spi.device.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest;
+
+/**
+ * Helper methods for assembling {@link DeviceEventBatch} objects from individual event
+ * create requests.
+ * 
+ * @author Derek
+ */
+public class DeviceEventBatches {
+
+	/**
+	 * Get the total number of events in a batch.
+	 * 
+	 * @param batch
+	 * @return
+	 */
+	public static int size(IDeviceEventBatch batch) {
+		int size = 0;
+		if (batch.getMeasurements() != null) {
+			size += batch.getMeasurements().size();
+		}
+		if (batch.getLocations() != null) {
+			size += batch.getLocations().size();
+		}
+		if (batch.getAlerts() != null) {
+			size += batch.getAlerts().size();
+		}
+		return size;
+	}
+
+	/**
+	 * Convert a measurements create request to the REST model class used in batches.
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public static DeviceMeasurementsCreateRequest toMeasurements(IDeviceMeasurementsCreateRequest request) {
+		if (request instanceof DeviceMeasurementsCreateRequest) {
+			return (DeviceMeasurementsCreateRequest) request;
+		}
+		DeviceMeasurementsCreateRequest copy = new DeviceMeasurementsCreateRequest();
+		copy.setEventDate(request.getEventDate());
+		for (String key : request.getMeasurements().keySet()) {
+			copy.addOrReplaceMeasurement(key, request.getMeasurement(key));
+		}
+		MetadataProvider.copy(request, copy);
+		return copy;
+	}
+
+	/**
+	 * Convert a location create request to the REST model class used in batches.
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public static DeviceLocationCreateRequest toLocation(IDeviceLocationCreateRequest request) {
+		if (request instanceof DeviceLocationCreateRequest) {
+			return (DeviceLocationCreateRequest) request;
+		}
+		DeviceLocationCreateRequest copy = new DeviceLocationCreateRequest();
+		copy.setEventDate(request.getEventDate());
+		copy.setLatitude(request.getLatitude());
+		copy.setLongitude(request.getLongitude());
+		copy.setElevation(request.getElevation());
+		MetadataProvider.copy(request, copy);
+		return copy;
+	}
+
+	/**
+	 * Convert an alert create request to the REST model class used in batches.
+	 * 
+	 * @param request
+	 * @return
+	 */
+	public static DeviceAlertCreateRequest toAlert(IDeviceAlertCreateRequest request) {
+		if (request instanceof DeviceAlertCreateRequest) {
+			return (DeviceAlertCreateRequest) request;
+		}
+		DeviceAlertCreateRequest copy = new DeviceAlertCreateRequest();
+		copy.setEventDate(request.getEventDate());
+		copy.setType(request.getType());
+		copy.setMessage(request.getMessage());
+		copy.setLevel(request.getLevel());
+		MetadataProvider.copy(request, copy);
+		return copy;
+	}
+}
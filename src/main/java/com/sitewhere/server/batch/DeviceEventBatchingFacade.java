@@ -0,0 +1,395 @@
+/*
+ * DeviceEventBatchingFacade.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.batch;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.core.DaemonThreadFactory;
+import com.sitewhere.core.SiteWherePersistence;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.device.DeviceManagementAdapter;
+import com.sitewhere.spi.device.IDeviceAlert;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceLocation;
+import com.sitewhere.spi.device.IDeviceMeasurements;
+import com.sitewhere.spi.device.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceEventCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest;
+
+/**
+ * Wraps a device management implementation in a facade that buffers single-event writes
+ * and sends them to the delegate as one {@link DeviceEventBatch} per assignment. A batch
+ * is flushed when it reaches the configured size or has been pending longer than the
+ * configured delay. Events returned from the single-event calls are built locally and
+ * have not been persisted yet when the call returns.
+ * <p>
+ * A batch the delegate fails to write is merged back into the pending batch for its
+ * assignment and retried on a later flush. After the configured number of attempts its
+ * events are dropped and counted in the {@link #DROPPED_EVENTS_METER} meter.
+ * 
+ * @author Derek
+ */
+public class DeviceEventBatchingFacade extends DeviceManagementAdapter {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(DeviceEventBatchingFacade.class);
+
+	/** Default maximum number of events in a batch */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+	/** Default maximum time (in ms) an event may wait before being flushed */
+	public static final long DEFAULT_MAX_DELAY_MS = 1000;
+
+	/** Default number of times a batch is sent before its events are dropped */
+	public static final int DEFAULT_MAX_FLUSH_ATTEMPTS = 3;
+
+	/** Name of the meter counting events dropped after failed flushes */
+	public static final String DROPPED_EVENTS_METER = MetricRegistry.name(DeviceEventBatchingFacade.class,
+			"droppedEvents");
+
+	/** Maximum number of events in a batch */
+	private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+	/** Maximum time (in ms) an event may wait before being flushed */
+	private long maxDelayMs = DEFAULT_MAX_DELAY_MS;
+
+	/** Number of times a batch is sent before its events are dropped */
+	private int maxFlushAttempts = DEFAULT_MAX_FLUSH_ATTEMPTS;
+
+	/** Pending batches by assignment token */
+	private ConcurrentHashMap<String, PendingBatch> pending = new ConcurrentHashMap<String, PendingBatch>();
+
+	/** Flushes batches that have waited too long */
+	private ScheduledExecutorService flusher;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#start()
+	 */
+	public void start() throws SiteWhereException {
+		super.start();
+		long period = Math.max(1, maxDelayMs / 4);
+		flusher = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory(
+				"SiteWhere Event Batch Flusher"));
+		flusher.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				flushExpired();
+			}
+		}, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#stop()
+	 */
+	public void stop() throws SiteWhereException {
+		if (flusher != null) {
+			flusher.shutdown();
+			try {
+				flusher.awaitTermination(maxDelayMs, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		for (int i = 0; (i < maxFlushAttempts) && (!pending.isEmpty()); i++) {
+			flushAll();
+		}
+		super.stop();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#addDeviceMeasurements(com.sitewhere.
+	 * spi.device.IDeviceAssignment,
+	 * com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest)
+	 */
+	public IDeviceMeasurements addDeviceMeasurements(IDeviceAssignment assignment,
+			IDeviceMeasurementsCreateRequest measurements) throws SiteWhereException {
+		IDeviceMeasurements result =
+				SiteWherePersistence.deviceMeasurementsCreateLogic(measurements, assignment);
+		enqueue(assignment.getToken(), measurements);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#addDeviceLocation(com.sitewhere.spi.
+	 * device.IDeviceAssignment,
+	 * com.sitewhere.spi.device.request.IDeviceLocationCreateRequest)
+	 */
+	public IDeviceLocation addDeviceLocation(IDeviceAssignment assignment,
+			IDeviceLocationCreateRequest request) throws SiteWhereException {
+		IDeviceLocation result = SiteWherePersistence.deviceLocationCreateLogic(assignment, request);
+		enqueue(assignment.getToken(), request);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#addDeviceAlert(com.sitewhere.spi.device
+	 * .IDeviceAssignment, com.sitewhere.spi.device.request.IDeviceAlertCreateRequest)
+	 */
+	public IDeviceAlert addDeviceAlert(IDeviceAssignment assignment, IDeviceAlertCreateRequest request)
+			throws SiteWhereException {
+		IDeviceAlert result = SiteWherePersistence.deviceAlertCreateLogic(assignment, request);
+		enqueue(assignment.getToken(), request);
+		return result;
+	}
+
+	/**
+	 * Add an event request to the pending batch for an assignment. Flushes the batch in
+	 * the calling thread if it has reached the maximum size.
+	 * 
+	 * @param assignmentToken
+	 * @param request
+	 */
+	protected void enqueue(String assignmentToken, IDeviceEventCreateRequest request) {
+		PendingBatch full = null;
+		while (true) {
+			PendingBatch batch = getPendingBatch(assignmentToken);
+			synchronized (batch) {
+				if (batch.closed) {
+					continue;
+				}
+				batch.add(request);
+				full = closeIfFull(assignmentToken, batch);
+			}
+			break;
+		}
+		flush(assignmentToken, full);
+	}
+
+	/**
+	 * Get the pending batch for an assignment, creating it if necessary.
+	 * 
+	 * @param assignmentToken
+	 * @return
+	 */
+	protected PendingBatch getPendingBatch(String assignmentToken) {
+		PendingBatch batch = pending.get(assignmentToken);
+		if (batch == null) {
+			PendingBatch created = new PendingBatch();
+			batch = pending.putIfAbsent(assignmentToken, created);
+			if (batch == null) {
+				batch = created;
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Closes a batch and detaches it from the pending map if it has reached the maximum
+	 * size. Must be called while holding the batch lock.
+	 * 
+	 * @param assignmentToken
+	 * @param batch
+	 * @return the batch if it was closed, null otherwise
+	 */
+	protected PendingBatch closeIfFull(String assignmentToken, PendingBatch batch) {
+		if (DeviceEventBatches.size(batch.events) >= maxBatchSize) {
+			batch.closed = true;
+			pending.remove(assignmentToken, batch);
+			return batch;
+		}
+		return null;
+	}
+
+	/**
+	 * Flush all batches that have been pending longer than the maximum delay.
+	 */
+	protected void flushExpired() {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, PendingBatch> entry : pending.entrySet()) {
+			PendingBatch batch = entry.getValue();
+			if ((now - batch.created) >= maxDelayMs) {
+				flush(entry.getKey(), close(entry.getKey(), batch));
+			}
+		}
+	}
+
+	/**
+	 * Flush all pending batches regardless of age.
+	 */
+	protected void flushAll() {
+		for (Map.Entry<String, PendingBatch> entry : pending.entrySet()) {
+			flush(entry.getKey(), close(entry.getKey(), entry.getValue()));
+		}
+	}
+
+	/**
+	 * Close a batch and detach it from the pending map.
+	 * 
+	 * @param assignmentToken
+	 * @param batch
+	 * @return the batch if this call closed it, null if it was already closed
+	 */
+	protected PendingBatch close(String assignmentToken, PendingBatch batch) {
+		synchronized (batch) {
+			if (batch.closed) {
+				return null;
+			}
+			batch.closed = true;
+		}
+		pending.remove(assignmentToken, batch);
+		return batch;
+	}
+
+	/**
+	 * Send a closed batch to the delegate. A batch that fails is re-queued until it has
+	 * been attempted the maximum number of times and is then dropped.
+	 * 
+	 * @param assignmentToken
+	 * @param batch
+	 */
+	protected void flush(String assignmentToken, PendingBatch batch) {
+		if ((batch == null) || (DeviceEventBatches.size(batch.events) == 0)) {
+			return;
+		}
+		try {
+			super.addDeviceEventBatch(assignmentToken, batch.events);
+			return;
+		} catch (SiteWhereException e) {
+			LOGGER.error("Unable to flush " + DeviceEventBatches.size(batch.events)
+					+ " events for assignment: " + assignmentToken, e);
+		} catch (Throwable t) {
+			LOGGER.error("Unhandled exception flushing events for assignment: " + assignmentToken, t);
+		}
+		batch.attempts++;
+		if (batch.attempts < maxFlushAttempts) {
+			requeue(assignmentToken, batch);
+		} else {
+			drop(assignmentToken, batch);
+		}
+	}
+
+	/**
+	 * Merge the events of a failed batch into the pending batch for the assignment so they
+	 * are sent again with the next flush.
+	 * 
+	 * @param assignmentToken
+	 * @param failed
+	 */
+	protected void requeue(String assignmentToken, PendingBatch failed) {
+		while (true) {
+			PendingBatch batch = getPendingBatch(assignmentToken);
+			synchronized (batch) {
+				if (batch.closed) {
+					continue;
+				}
+				batch.addAll(failed.events);
+				batch.attempts = Math.max(batch.attempts, failed.attempts);
+			}
+			break;
+		}
+	}
+
+	/**
+	 * Give up on a batch that could not be written and count its events as dropped.
+	 * 
+	 * @param assignmentToken
+	 * @param batch
+	 */
+	protected void drop(String assignmentToken, PendingBatch batch) {
+		int size = DeviceEventBatches.size(batch.events);
+		LOGGER.error("Dropped " + size + " events for assignment " + assignmentToken + " after "
+				+ batch.attempts + " failed attempts.");
+		SiteWhereServer.getInstance().getMetricRegistry().meter(DROPPED_EVENTS_METER).mark(size);
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	public long getMaxDelayMs() {
+		return maxDelayMs;
+	}
+
+	public void setMaxDelayMs(long maxDelayMs) {
+		this.maxDelayMs = maxDelayMs;
+	}
+
+	public int getMaxFlushAttempts() {
+		return maxFlushAttempts;
+	}
+
+	public void setMaxFlushAttempts(int maxFlushAttempts) {
+		this.maxFlushAttempts = maxFlushAttempts;
+	}
+
+	/**
+	 * Events buffered for a single assignment.
+	 * 
+	 * @author Derek
+	 */
+	private static class PendingBatch {
+
+		/** Batch of events waiting to be written */
+		private DeviceEventBatch events = new DeviceEventBatch();
+
+		/** Time the batch was created */
+		private long created = System.currentTimeMillis();
+
+		/** Indicates the batch has been detached and may not accept more events */
+		private boolean closed = false;
+
+		/** Number of failed attempts to write the batch */
+		private int attempts = 0;
+
+		/**
+		 * Add a request to the list that matches its type.
+		 * 
+		 * @param request
+		 */
+		private void add(IDeviceEventCreateRequest request) {
+			if (request instanceof IDeviceMeasurementsCreateRequest) {
+				events.getMeasurements().add(
+						DeviceEventBatches.toMeasurements((IDeviceMeasurementsCreateRequest) request));
+			} else if (request instanceof IDeviceLocationCreateRequest) {
+				events.getLocations().add(DeviceEventBatches.toLocation((IDeviceLocationCreateRequest) request));
+			} else if (request instanceof IDeviceAlertCreateRequest) {
+				events.getAlerts().add(DeviceEventBatches.toAlert((IDeviceAlertCreateRequest) request));
+			}
+		}
+
+		/**
+		 * Add all events from another batch.
+		 * 
+		 * @param other
+		 */
+		private void addAll(DeviceEventBatch other) {
+			events.getMeasurements().addAll(other.getMeasurements());
+			events.getLocations().addAll(other.getLocations());
+			events.getAlerts().addAll(other.getAlerts());
+		}
+	}
+}
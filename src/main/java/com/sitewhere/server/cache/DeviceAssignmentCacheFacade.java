@@ -0,0 +1,405 @@
+/*
+ * DeviceAssignmentCacheFacade.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.cache;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.common.IMetadataProvider;
+import com.sitewhere.spi.device.DeviceAssignmentStatus;
+import com.sitewhere.spi.device.DeviceManagementAdapter;
+import com.sitewhere.spi.device.IDevice;
+import com.sitewhere.spi.device.IDeviceAlert;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceEventBatch;
+import com.sitewhere.spi.device.IDeviceEventBatchResponse;
+import com.sitewhere.spi.device.IDeviceLocation;
+import com.sitewhere.spi.device.IDeviceManagement;
+import com.sitewhere.spi.device.IDeviceMeasurements;
+import com.sitewhere.spi.device.request.IDeviceAlertCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceAssignmentCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceLocationCreateRequest;
+import com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest;
+
+/**
+ * Wraps a device management implementation in a facade that caches device assignment
+ * lookups by assignment token and the token of the current assignment by device hardware
+ * id. Assignments are only held in the token cache, so dropping a token is enough to
+ * invalidate every lookup of the assignment. Calls that change an assignment or add
+ * events for it drop the token and updates write the returned assignment back.
+ * <p>
+ * Every invalidation increments a generation counter for the key. A value loaded from the
+ * delegate is only cached if the generation of its key did not change during the load,
+ * so a load that races an update does not put the old value back. Counters are striped
+ * by key hash, so an unrelated invalidation occasionally causes a load not to be cached.
+ * <p>
+ * The facade should sit inside any facade that defers writes, such as
+ * {@link com.sitewhere.server.batch.AssignmentStateCoalescingFacade}, so the deferred
+ * writes pass through it when they reach the datastore.
+ * 
+ * @author Derek
+ */
+public class DeviceAssignmentCacheFacade extends DeviceManagementAdapter {
+
+	/** Default maximum number of cached entries per cache */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/** Default time (in ms) a cached assignment stays valid */
+	public static final long DEFAULT_TTL_MS = 60 * 1000;
+
+	/** Number of generation counters keys are spread over */
+	private static final int GENERATION_STRIPES = 64;
+
+	/** Maximum number of cached entries per cache */
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	/** Time (in ms) a cached assignment stays valid */
+	private long ttlMs = DEFAULT_TTL_MS;
+
+	/** Assignments by assignment token */
+	private LruTtlCache<String, IDeviceAssignment> assignmentsByToken;
+
+	/** Current assignment tokens by device hardware id */
+	private LruTtlCache<String, String> tokensByHardwareId;
+
+	/** Incremented when a key in the stripe is invalidated */
+	private final long[] generations = new long[GENERATION_STRIPES];
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#start()
+	 */
+	public void start() throws SiteWhereException {
+		MetricRegistry registry = SiteWhereServer.getInstance().getMetricRegistry();
+		assignmentsByToken =
+				new LruTtlCache<String, IDeviceAssignment>(MetricRegistry.name(IDeviceManagement.class,
+						"assignmentByTokenCache"), maxSize, ttlMs, registry);
+		tokensByHardwareId =
+				new LruTtlCache<String, String>(MetricRegistry.name(IDeviceManagement.class,
+						"assignmentByHardwareIdCache"), maxSize, ttlMs, registry);
+		super.start();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#getDeviceAssignmentByToken(java.lang.String)
+	 */
+	public IDeviceAssignment getDeviceAssignmentByToken(String token) throws SiteWhereException {
+		IDeviceAssignment assignment = assignmentsByToken.get(token);
+		if (assignment == null) {
+			long loadedGeneration = getGeneration(token);
+			assignment = super.getDeviceAssignmentByToken(token);
+			if (assignment != null) {
+				put(assignmentsByToken, token, assignment, loadedGeneration);
+			}
+		}
+		return assignment;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#getCurrentDeviceAssignment(com.sitewhere
+	 * .spi.device.IDevice)
+	 */
+	public IDeviceAssignment getCurrentDeviceAssignment(IDevice device) throws SiteWhereException {
+		String hardwareId = device.getHardwareId();
+		String token = tokensByHardwareId.get(hardwareId);
+		if (token != null) {
+			IDeviceAssignment assignment = getDeviceAssignmentByToken(token);
+			if (assignment != null) {
+				return assignment;
+			}
+		}
+		long loadedHardwareIdGeneration = getGeneration(hardwareId);
+		IDeviceAssignment assignment = super.getCurrentDeviceAssignment(device);
+		if (assignment != null) {
+			put(tokensByHardwareId, hardwareId, assignment.getToken(), loadedHardwareIdGeneration);
+		}
+		return assignment;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#createDeviceAssignment(com.sitewhere.
+	 * spi.device.request.IDeviceAssignmentCreateRequest)
+	 */
+	public IDeviceAssignment createDeviceAssignment(IDeviceAssignmentCreateRequest request)
+			throws SiteWhereException {
+		invalidateHardwareId(request.getDeviceHardwareId());
+		IDeviceAssignment created = super.createDeviceAssignment(request);
+		invalidateHardwareId(request.getDeviceHardwareId());
+		return created;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentMetadata(java.lang
+	 * .String, com.sitewhere.spi.common.IMetadataProvider)
+	 */
+	public IDeviceAssignment updateDeviceAssignmentMetadata(String token, IMetadataProvider metadata)
+			throws SiteWhereException {
+		long generation = invalidate(token);
+		return writeThrough(token, super.updateDeviceAssignmentMetadata(token, metadata), generation);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentStatus(java.lang
+	 * .String, com.sitewhere.spi.device.DeviceAssignmentStatus)
+	 */
+	public IDeviceAssignment updateDeviceAssignmentStatus(String token, DeviceAssignmentStatus status)
+			throws SiteWhereException {
+		long generation = invalidate(token);
+		IDeviceAssignment updated = super.updateDeviceAssignmentStatus(token, status);
+		if (updated != null) {
+			invalidateHardwareId(updated.getDeviceHardwareId());
+		}
+		return writeThrough(token, updated, generation);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#updateDeviceAssignmentState(java.lang
+	 * .String, com.sitewhere.spi.device.IDeviceEventBatch)
+	 */
+	public IDeviceAssignment updateDeviceAssignmentState(String token, IDeviceEventBatch batch)
+			throws SiteWhereException {
+		long generation = invalidate(token);
+		return writeThrough(token, super.updateDeviceAssignmentState(token, batch), generation);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#endDeviceAssignment(java.lang.String)
+	 */
+	public IDeviceAssignment endDeviceAssignment(String token) throws SiteWhereException {
+		long generation = invalidate(token);
+		IDeviceAssignment ended = super.endDeviceAssignment(token);
+		if (ended != null) {
+			invalidateHardwareId(ended.getDeviceHardwareId());
+		}
+		return writeThrough(token, ended, generation);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#deleteDeviceAssignment(java.lang.String,
+	 * boolean)
+	 */
+	public IDeviceAssignment deleteDeviceAssignment(String token, boolean force) throws SiteWhereException {
+		invalidate(token);
+		IDeviceAssignment deleted = super.deleteDeviceAssignment(token, force);
+		invalidate(token);
+		if (deleted != null) {
+			invalidateHardwareId(deleted.getDeviceHardwareId());
+		}
+		return deleted;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#addDeviceMeasurements(com.sitewhere.
+	 * spi.device.IDeviceAssignment,
+	 * com.sitewhere.spi.device.request.IDeviceMeasurementsCreateRequest)
+	 */
+	public IDeviceMeasurements addDeviceMeasurements(IDeviceAssignment assignment,
+			IDeviceMeasurementsCreateRequest measurements) throws SiteWhereException {
+		try {
+			return super.addDeviceMeasurements(assignment, measurements);
+		} finally {
+			invalidate(assignment.getToken());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#addDeviceLocation(com.sitewhere.spi.
+	 * device.IDeviceAssignment,
+	 * com.sitewhere.spi.device.request.IDeviceLocationCreateRequest)
+	 */
+	public IDeviceLocation addDeviceLocation(IDeviceAssignment assignment,
+			IDeviceLocationCreateRequest request) throws SiteWhereException {
+		try {
+			return super.addDeviceLocation(assignment, request);
+		} finally {
+			invalidate(assignment.getToken());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * com.sitewhere.spi.device.IDeviceManagement#addDeviceAlert(com.sitewhere.spi.device
+	 * .IDeviceAssignment, com.sitewhere.spi.device.request.IDeviceAlertCreateRequest)
+	 */
+	public IDeviceAlert addDeviceAlert(IDeviceAssignment assignment, IDeviceAlertCreateRequest request)
+			throws SiteWhereException {
+		try {
+			return super.addDeviceAlert(assignment, request);
+		} finally {
+			invalidate(assignment.getToken());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#addDeviceEventBatch(java.lang.String,
+	 * com.sitewhere.spi.device.IDeviceEventBatch)
+	 */
+	public IDeviceEventBatchResponse addDeviceEventBatch(String assignmentToken, IDeviceEventBatch batch)
+			throws SiteWhereException {
+		try {
+			return super.addDeviceEventBatch(assignmentToken, batch);
+		} finally {
+			invalidate(assignmentToken);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#updateDevice(java.lang.String,
+	 * com.sitewhere.spi.device.request.IDeviceCreateRequest)
+	 */
+	public IDevice updateDevice(String hardwareId, IDeviceCreateRequest request) throws SiteWhereException {
+		invalidateHardwareId(hardwareId);
+		try {
+			return super.updateDevice(hardwareId, request);
+		} finally {
+			invalidateHardwareId(hardwareId);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.spi.device.IDeviceManagement#deleteDevice(java.lang.String,
+	 * boolean)
+	 */
+	public IDevice deleteDevice(String hardwareId, boolean force) throws SiteWhereException {
+		invalidateHardwareId(hardwareId);
+		try {
+			return super.deleteDevice(hardwareId, force);
+		} finally {
+			invalidateHardwareId(hardwareId);
+		}
+	}
+
+	/**
+	 * Remove an assignment from the token cache.
+	 * 
+	 * @param token
+	 * @return the generation of the token after invalidation
+	 */
+	protected synchronized long invalidate(String token) {
+		assignmentsByToken.remove(token);
+		return ++generations[stripe(token)];
+	}
+
+	/**
+	 * Remove the current assignment token for a device.
+	 * 
+	 * @param hardwareId
+	 */
+	protected synchronized void invalidateHardwareId(String hardwareId) {
+		tokensByHardwareId.remove(hardwareId);
+		generations[stripe(hardwareId)]++;
+	}
+
+	/**
+	 * Store an updated assignment in the token cache unless the token was invalidated
+	 * again while the update ran.
+	 * 
+	 * @param token
+	 * @param updated
+	 * @param generation
+	 * @return
+	 */
+	protected IDeviceAssignment writeThrough(String token, IDeviceAssignment updated, long generation) {
+		if (updated != null) {
+			put(assignmentsByToken, token, updated, generation);
+		}
+		return updated;
+	}
+
+	/**
+	 * Cache a value if the generation of its key has not changed since it was loaded.
+	 * 
+	 * @param cache
+	 * @param key
+	 * @param value
+	 * @param loadedGeneration
+	 */
+	protected synchronized <V> void put(LruTtlCache<String, V> cache, String key, V value,
+			long loadedGeneration) {
+		if (generations[stripe(key)] == loadedGeneration) {
+			cache.put(key, value);
+		}
+	}
+
+	/**
+	 * Get the current generation for a key.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	protected synchronized long getGeneration(String key) {
+		return generations[stripe(key)];
+	}
+
+	/**
+	 * Get the generation stripe for a key.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	protected int stripe(String key) {
+		return (key.hashCode() & 0x7fffffff) % GENERATION_STRIPES;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public long getTtlMs() {
+		return ttlMs;
+	}
+
+	public void setTtlMs(long ttlMs) {
+		this.ttlMs = ttlMs;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * LruTtlCache.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+
+/**
+ * Bounded cache that evicts the least recently used entry when full and treats entries
+ * older than the time-to-live as missing. Hits, misses and evictions are counted in the
+ * given metric registry.
+ * 
+ * @author Derek
+ * 
+ * @param <K>
+ * @param <V>
+ */
+public class LruTtlCache<K, V> {
+
+	/** Maximum number of entries */
+	private final int maxSize;
+
+	/** Time (in ms) an entry stays valid */
+	private final long ttlMs;
+
+	/** Entries in access order */
+	private final Map<K, CacheEntry<V>> entries;
+
+	/** Counts cache hits */
+	private final Counter hits;
+
+	/** Counts cache misses */
+	private final Counter misses;
+
+	/** Counts entries evicted for size or age */
+	private final Counter evictions;
+
+	/**
+	 * Create a cache and register its counters under the given name.
+	 * 
+	 * @param name
+	 * @param maxSize
+	 * @param ttlMs
+	 * @param registry
+	 */
+	public LruTtlCache(String name, int maxSize, long ttlMs, MetricRegistry registry) {
+		this.maxSize = maxSize;
+		this.ttlMs = ttlMs;
+		this.hits = registry.counter(MetricRegistry.name(name, "hits"));
+		this.misses = registry.counter(MetricRegistry.name(name, "misses"));
+		this.evictions = registry.counter(MetricRegistry.name(name, "evictions"));
+		this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+
+			/** Serial version UID */
+			private static final long serialVersionUID = 1L;
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+			 */
+			protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+				if (size() > LruTtlCache.this.maxSize) {
+					evictions.inc();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get a cached value or null if missing or expired.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	public synchronized V get(K key) {
+		CacheEntry<V> entry = entries.get(key);
+		if (entry == null) {
+			misses.inc();
+			return null;
+		}
+		if (System.currentTimeMillis() > entry.expires) {
+			entries.remove(key);
+			evictions.inc();
+			misses.inc();
+			return null;
+		}
+		hits.inc();
+		return entry.value;
+	}
+
+	/**
+	 * Add or replace a value.
+	 * 
+	 * @param key
+	 * @param value
+	 */
+	public synchronized void put(K key, V value) {
+		entries.put(key, new CacheEntry<V>(value, System.currentTimeMillis() + ttlMs));
+	}
+
+	/**
+	 * Remove a value.
+	 * 
+	 * @param key
+	 * @return the removed value or null if not cached
+	 */
+	public synchronized V remove(K key) {
+		CacheEntry<V> entry = entries.remove(key);
+		return (entry != null) ? entry.value : null;
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Get the number of cached entries, including expired entries not yet removed.
+	 * 
+	 * @return
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Cached value with its expiration time.
+	 * 
+	 * @param <V>
+	 */
+	private static class CacheEntry<V> {
+
+		/** Cached value */
+		private final V value;
+
+		/** Time the value expires */
+		private final long expires;
+
+		public CacheEntry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+	}
+}
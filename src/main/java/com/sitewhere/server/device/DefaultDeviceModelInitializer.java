@@ -12,11 +12,24 @@ package com.sitewhere.server.device;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.sitewhere.core.DaemonThreadFactory;
 import com.sitewhere.geo.GeoUtils;
 import com.sitewhere.rest.model.common.Location;
 import com.sitewhere.rest.model.device.DeviceEventBatch;
@@ -28,14 +41,14 @@ import com.sitewhere.rest.model.device.request.DeviceMeasurementsCreateRequest;
 import com.sitewhere.rest.model.device.request.SiteCreateRequest;
 import com.sitewhere.rest.model.device.request.ZoneCreateRequest;
 import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.server.batch.DeviceEventBatches;
+import com.sitewhere.server.metrics.MetricsFacade;
 import com.sitewhere.spi.SiteWhereException;
 import com.sitewhere.spi.device.AlertLevel;
 import com.sitewhere.spi.device.DeviceAssignmentType;
 import com.sitewhere.spi.device.IDevice;
 import com.sitewhere.spi.device.IDeviceAssignment;
-import com.sitewhere.spi.device.IDeviceLocation;
 import com.sitewhere.spi.device.IDeviceManagement;
-import com.sitewhere.spi.device.IDeviceMeasurements;
 import com.sitewhere.spi.device.ISite;
 import com.sitewhere.spi.device.ISiteMapMetadata;
 import com.sitewhere.spi.device.IZone;
@@ -51,6 +64,13 @@ import com.vividsolutions.jts.geom.util.AffineTransformation;
 /**
  * Used to load a default site/devices/assignments/events so that there is demo data in
  * the system. The server only offers this functionality if no sites already exist.
+ * <p>
+ * The number of sites, assignments and events, the spacing of event dates, an optional
+ * event rate limit, the number of threads, the random seed and whether events are sent
+ * one at a time or with addDeviceEventBatch are all configurable, so the initializer can
+ * also be used as a load driver to size a datastore. Every device management call is
+ * timed and a summary of throughput and latency percentiles is logged when loading
+ * completes. With the default settings it creates the same demo data as before.
  * 
  * @author Derek
  */
@@ -74,6 +94,9 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	/** Prefix for create event log message */
 	public static final String PREFIX_CREATE_EVENTS = "[Create Events]";
 
+	/** Prefix for load report log message */
+	public static final String PREFIX_LOAD_REPORT = "[Load Report]";
+
 	/** Number of devices to create */
 	public static final int NUM_SITES = 1;
 
@@ -86,6 +109,18 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	/** Number of events per assignment */
 	public static final int LOCATIONS_PER_ASSIGNMENT = 40;
 
+	/** Time (in ms) between simulated measurement events */
+	public static final long MEASUREMENT_INTERVAL_MS = 10000;
+
+	/** Time (in ms) between simulated location events */
+	public static final long LOCATION_INTERVAL_MS = 30000;
+
+	/** Default number of events sent in each batch when batches are used */
+	public static final int DEFAULT_EVENT_BATCH_SIZE = 100;
+
+	/** Number of assignments between progress log messages */
+	public static final int PROGRESS_INTERVAL = 1000;
+
 	/** Minimum engine temp */
 	public static final double MIN_TEMP = 80;
 
@@ -122,6 +157,51 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	/** Indiates whether model should be initialized if no console is available for input */
 	private boolean initializeIfNoConsole = false;
 
+	/** Number of sites to create */
+	private int numSites = NUM_SITES;
+
+	/** Number of devices/assignments to create per site */
+	private int assignmentsPerSite = ASSIGNMENTS_PER_SITE;
+
+	/** Number of measurement events per assignment */
+	private int eventsPerAssignment = EVENTS_PER_ASSIGNMENT;
+
+	/** Number of location events per assignment */
+	private int locationsPerAssignment = LOCATIONS_PER_ASSIGNMENT;
+
+	/** Time (in ms) between simulated measurement events */
+	private long measurementIntervalMs = MEASUREMENT_INTERVAL_MS;
+
+	/** Time (in ms) between simulated location events */
+	private long locationIntervalMs = LOCATION_INTERVAL_MS;
+
+	/** Maximum number of events sent per second across all threads (zero for no limit) */
+	private int eventsPerSecond = 0;
+
+	/** Number of threads creating assignments and events */
+	private int threads = 1;
+
+	/** Seed for random data or null to choose one */
+	private Long seed;
+
+	/** Indicates whether events are sent with addDeviceEventBatch */
+	private boolean useEventBatches = false;
+
+	/** Number of events sent in each batch when batches are used */
+	private int eventBatchSize = DEFAULT_EVENT_BATCH_SIZE;
+
+	/** Registry for timers gathered while loading */
+	protected MetricRegistry loadMetrics;
+
+	/** Number of events created */
+	protected AtomicLong eventCount = new AtomicLong();
+
+	/** Number of assignments created */
+	protected AtomicLong assignmentCount = new AtomicLong();
+
+	/** Time (in ns) at which the next event may be sent when the event rate is limited */
+	protected AtomicLong nextEventNanos = new AtomicLong();
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -131,7 +211,12 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	 */
 	@Override
 	public void initialize(IDeviceManagement deviceManagement) throws SiteWhereException {
-		this.deviceManagement = deviceManagement;
+		this.loadMetrics = new MetricRegistry();
+		this.deviceManagement = MetricsFacade.wrap(IDeviceManagement.class, deviceManagement, loadMetrics);
+		this.eventCount.set(0);
+		this.assignmentCount.set(0);
+		this.nextEventNanos.set(System.nanoTime());
+		long seedValue = (seed != null) ? seed : System.nanoTime();
 
 		// Use the system account for logging "created by" on created elements.
 		SecurityContextHolder.getContext().setAuthentication(SiteWhereServer.getSystemAuthentication());
@@ -148,15 +233,51 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 		zoneLocations.add(new Location(34.10606246444614, -84.23700034618376));
 		zoneLocations.add(new Location(34.107691680235604, -84.23690915107727));
 
-		List<ISite> sites = createSites();
-		for (ISite site : sites) {
-			List<IDeviceAssignment> assignments = createAssignments(site);
-			for (IDeviceAssignment assignment : assignments) {
-				assignment.getActiveDate();
+		long start = System.nanoTime();
+		try {
+			List<ISite> sites = createSites();
+			createAssignments(sites, seedValue);
+		} finally {
+			logLoadReport(System.nanoTime() - start, seedValue);
+			SecurityContextHolder.getContext().setAuthentication(null);
+		}
+	}
+
+	/**
+	 * Log totals, throughput and latency percentiles for each device management call.
+	 * 
+	 * @param elapsedNanos
+	 * @param seedValue
+	 */
+	protected void logLoadReport(long elapsedNanos, long seedValue) {
+		double seconds = elapsedNanos / 1000000000.0;
+		long events = eventCount.get();
+		LOGGER.info(PREFIX_LOAD_REPORT + " Created " + assignmentCount.get() + " assignments and " + events
+				+ " events in " + String.format("%.2f", seconds) + "s ("
+				+ String.format("%.1f", (seconds > 0) ? events / seconds : 0) + " events/s) using " + threads
+				+ " thread(s), seed " + seedValue + ", " + (useEventBatches ? "batches of " + eventBatchSize
+				: "single events") + ".");
+		for (Map.Entry<String, Timer> entry : loadMetrics.getTimers().entrySet()) {
+			Timer timer = entry.getValue();
+			if (timer.getCount() == 0) {
+				continue;
 			}
+			Snapshot snapshot = timer.getSnapshot();
+			LOGGER.info(PREFIX_LOAD_REPORT + " " + entry.getKey() + ": count=" + timer.getCount() + " rate="
+					+ String.format("%.1f", timer.getMeanRate()) + "/s mean=" + toMs(snapshot.getMean())
+					+ "ms p50=" + toMs(snapshot.getMedian()) + "ms p95=" + toMs(snapshot.get95thPercentile())
+					+ "ms p99=" + toMs(snapshot.get99thPercentile()) + "ms max=" + toMs(snapshot.getMax()) + "ms");
 		}
+	}
 
-		SecurityContextHolder.getContext().setAuthentication(null);
+	/**
+	 * Format a duration in nanoseconds as milliseconds.
+	 * 
+	 * @param nanos
+	 * @return
+	 */
+	protected static String toMs(double nanos) {
+		return String.format("%.3f", nanos / 1000000.0);
 	}
 
 	/*
@@ -180,7 +301,7 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	 */
 	public List<ISite> createSites() throws SiteWhereException {
 		List<ISite> results = new ArrayList<ISite>();
-		for (int x = 0; x < NUM_SITES; x++) {
+		for (int x = 0; x < numSites; x++) {
 			SiteCreateRequest request = new SiteCreateRequest();
 			request.setName("Construction Site " + (x + 1));
 			request.setDescription("A construction site with many high-value assets that should "
@@ -222,53 +343,111 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	}
 
 	/**
-	 * Create devices for a site and assign them.
+	 * Create devices and assignments for all sites using the configured number of threads.
+	 * Each assignment gets its own random generator derived from the seed, so the data
+	 * created does not depend on how work is spread across threads.
+	 * 
+	 * @param sites
+	 * @param seedValue
+	 * @throws SiteWhereException
+	 */
+	protected void createAssignments(List<ISite> sites, final long seedValue) throws SiteWhereException {
+		final Date now = new Date();
+		ExecutorService executor =
+				Executors.newFixedThreadPool(Math.max(threads, 1), new DaemonThreadFactory(
+						"SiteWhere Model Initializer"));
+		try {
+			List<Future<IDeviceAssignment>> futures = new ArrayList<Future<IDeviceAssignment>>();
+			for (int siteIndex = 0; siteIndex < sites.size(); siteIndex++) {
+				final ISite site = sites.get(siteIndex);
+				for (int x = 0; x < assignmentsPerSite; x++) {
+					final int index = x;
+					final long assignmentSeed =
+							seedValue + ((long) siteIndex * assignmentsPerSite + x) * 0x9E3779B97F4A7C15L;
+					futures.add(executor.submit(new Callable<IDeviceAssignment>() {
+
+						public IDeviceAssignment call() throws Exception {
+							SecurityContextHolder.getContext().setAuthentication(
+									SiteWhereServer.getSystemAuthentication());
+							try {
+								return createAssignment(site, index, now, new Random(assignmentSeed));
+							} finally {
+								SecurityContextHolder.getContext().setAuthentication(null);
+							}
+						}
+					}));
+				}
+			}
+			for (Future<IDeviceAssignment> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof SiteWhereException) {
+				throw (SiteWhereException) e.getCause();
+			}
+			throw new SiteWhereException("Unable to create device assignments.", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SiteWhereException("Interrupted while creating device assignments.", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Create a device, assign it and create events for the assignment.
 	 * 
 	 * @param site
+	 * @param index
+	 * @param now
+	 * @param random
 	 * @return
 	 * @throws SiteWhereException
 	 */
-	public List<IDeviceAssignment> createAssignments(ISite site) throws SiteWhereException {
-		Date now = new Date();
-		List<IDeviceAssignment> results = new ArrayList<IDeviceAssignment>();
-		for (int x = 0; x < ASSIGNMENTS_PER_SITE; x++) {
-			AssignmentChoice assnChoice = getRandomAssignmentChoice();
-
-			// Create device.
-			DeviceCreateRequest request = new DeviceCreateRequest();
-			request.setHardwareId(UUID.randomUUID().toString());
-			request.setComments(assnChoice.getDeviceDescriptionBase() + " " + (x + 1) + ".");
-			request.setAssetId(assnChoice.getDeviceAssetId());
-			IDevice device = getDeviceManagement().createDevice(request);
-			LOGGER.info(PREFIX_CREATE_DEVICE + " " + device.getHardwareId());
-
-			// Create assignment.
-			DeviceAssignmentCreateRequest assnRequest = new DeviceAssignmentCreateRequest();
-			assnRequest.setAssignmentType(assnChoice.getAssignmentType());
-			assnRequest.setAssetId(assnChoice.getAssignmentAssetId());
-			assnRequest.setDeviceHardwareId(device.getHardwareId());
-			assnRequest.setSiteToken(site.getToken());
-			assnRequest.addOrReplaceMetadata("S/N", UUID.randomUUID().toString());
-			IDeviceAssignment assignment = getDeviceManagement().createDeviceAssignment(assnRequest);
-			LOGGER.info(PREFIX_CREATE_ASSIGNMENT + " " + assignment.getToken());
-
-			// Create events for assignment.
-			createDeviceMeasurements(assignment, now);
-			createDeviceLocations(assignment, now);
-
-			results.add(assignment);
+	protected IDeviceAssignment createAssignment(ISite site, int index, Date now, Random random)
+			throws SiteWhereException {
+		AssignmentChoice assnChoice = getRandomAssignmentChoice(random);
+
+		// Create device.
+		DeviceCreateRequest request = new DeviceCreateRequest();
+		request.setHardwareId(new UUID(random.nextLong(), random.nextLong()).toString());
+		request.setComments(assnChoice.getDeviceDescriptionBase() + " " + (index + 1) + ".");
+		request.setAssetId(assnChoice.getDeviceAssetId());
+		IDevice device = getDeviceManagement().createDevice(request);
+		LOGGER.debug(PREFIX_CREATE_DEVICE + " " + device.getHardwareId());
+
+		// Create assignment.
+		DeviceAssignmentCreateRequest assnRequest = new DeviceAssignmentCreateRequest();
+		assnRequest.setAssignmentType(assnChoice.getAssignmentType());
+		assnRequest.setAssetId(assnChoice.getAssignmentAssetId());
+		assnRequest.setDeviceHardwareId(device.getHardwareId());
+		assnRequest.setSiteToken(site.getToken());
+		assnRequest.addOrReplaceMetadata("S/N", new UUID(random.nextLong(), random.nextLong()).toString());
+		IDeviceAssignment assignment = getDeviceManagement().createDeviceAssignment(assnRequest);
+		LOGGER.debug(PREFIX_CREATE_ASSIGNMENT + " " + assignment.getToken());
+
+		// Create events for assignment.
+		createDeviceMeasurements(assignment, now, random);
+		createDeviceLocations(assignment, now, random);
+
+		long created = assignmentCount.incrementAndGet();
+		if (created % PROGRESS_INTERVAL == 0) {
+			LOGGER.info(PREFIX_CREATE_ASSIGNMENT + " Created " + created + " assignments and " + eventCount.get()
+					+ " events.");
 		}
-		return results;
+		return assignment;
 	}
 
 	/**
 	 * Create device measurements associated with an assignment.
 	 * 
 	 * @param assignment
-	 * @return
+	 * @param start
+	 * @param random
+	 * @return number of events created
 	 * @throws SiteWhereException
 	 */
-	protected List<IDeviceMeasurements> createDeviceMeasurements(IDeviceAssignment assignment, Date start)
+	protected int createDeviceMeasurements(IDeviceAssignment assignment, Date start, Random random)
 			throws SiteWhereException {
 		long current = start.getTime();
 		double temp = MIN_TEMP;
@@ -277,19 +456,19 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 		double mult = 6;
 		int measurementCount = 0;
 		int alertCount = 0;
-		List<IDeviceMeasurements> results = new ArrayList<IDeviceMeasurements>();
+		DeviceEventBatch pending = new DeviceEventBatch();
 		DeviceMeasurementsCreateRequest lastMx = null;
 		DeviceAlertCreateRequest lastAlert = null;
-		for (int x = 0; x < EVENTS_PER_ASSIGNMENT; x++) {
+		for (int x = 0; x < eventsPerAssignment; x++) {
 			// Simulate temperature changes.
-			temp = temp + (delta + ((Math.random() * mult * 2) - mult));
+			temp = temp + (delta + ((random.nextDouble() * mult * 2) - mult));
 			temp = Math.round(temp * 100.0) / 100.0;
 			if ((temp > MAX_TEMP) || (temp < MIN_TEMP)) {
 				delta = -delta;
 			}
 
 			// Simulate fuel changes.
-			fuel -= (Math.random() * 2);
+			fuel -= (random.nextDouble() * 2);
 			fuel = Math.round(fuel * 100.0) / 100.0;
 			if (fuel < 0) {
 				fuel = 0;
@@ -300,7 +479,12 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 			mreq.addOrReplaceMeasurement("engine.temperature", temp);
 			mreq.addOrReplaceMeasurement("fuel.level", fuel);
 			mreq.setEventDate(new Date(current));
-			results.add(getDeviceManagement().addDeviceMeasurements(assignment, mreq));
+			if (useEventBatches) {
+				pending.getMeasurements().add(mreq);
+			} else {
+				pace(1);
+				getDeviceManagement().addDeviceMeasurements(assignment, mreq);
+			}
 			lastMx = mreq;
 			measurementCount++;
 
@@ -319,14 +503,25 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 					areq.setLevel(AlertLevel.Critical);
 					break;
 				}
-				getDeviceManagement().addDeviceAlert(assignment, areq);
+				if (useEventBatches) {
+					pending.getAlerts().add(areq);
+				} else {
+					pace(1);
+					getDeviceManagement().addDeviceAlert(assignment, areq);
+				}
 				lastAlert = areq;
 				alertCount++;
 			}
 
-			current += 10000;
+			if (DeviceEventBatches.size(pending) >= eventBatchSize) {
+				sendBatch(assignment, pending);
+				pending = new DeviceEventBatch();
+			}
+			current += measurementIntervalMs;
 		}
-		LOGGER.info(PREFIX_CREATE_EVENTS + " " + measurementCount + " measurements. " + alertCount
+		sendBatch(assignment, pending);
+		eventCount.addAndGet(measurementCount + alertCount);
+		LOGGER.debug(PREFIX_CREATE_EVENTS + " " + measurementCount + " measurements. " + alertCount
 				+ " alerts.");
 
 		// Update assignment state.
@@ -338,18 +533,64 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 			batch.getAlerts().add(lastAlert);
 		}
 		getDeviceManagement().updateDeviceAssignmentState(assignment.getToken(), batch);
-		return results;
+		return measurementCount + alertCount;
+	}
+
+	/**
+	 * Send a batch of events for an assignment if it is not empty.
+	 * 
+	 * @param assignment
+	 * @param batch
+	 * @throws SiteWhereException
+	 */
+	protected void sendBatch(IDeviceAssignment assignment, DeviceEventBatch batch) throws SiteWhereException {
+		int size = DeviceEventBatches.size(batch);
+		if (size > 0) {
+			pace(size);
+			getDeviceManagement().addDeviceEventBatch(assignment.getToken(), batch);
+		}
+	}
+
+	/**
+	 * Wait until events may be sent without going over the configured event rate. Slots
+	 * are handed out from a shared schedule so the limit applies across all threads.
+	 * 
+	 * @param events
+	 * @throws SiteWhereException
+	 */
+	protected void pace(int events) throws SiteWhereException {
+		if (eventsPerSecond <= 0) {
+			return;
+		}
+		long interval = (1000000000L * events) / eventsPerSecond;
+		while (true) {
+			long now = System.nanoTime();
+			long next = nextEventNanos.get();
+			long slot = Math.max(next, now);
+			if (nextEventNanos.compareAndSet(next, slot + interval)) {
+				if (slot > now) {
+					try {
+						TimeUnit.NANOSECONDS.sleep(slot - now);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new SiteWhereException("Interrupted while pacing events.", e);
+					}
+				}
+				return;
+			}
+		}
 	}
 
 	/**
 	 * Create device locations in a path near the main zone.
 	 * 
 	 * @param assignment
-	 * @param start
-	 * @return
+	 * @param date
+	 * @param random
+	 * @return number of events created
 	 * @throws SiteWhereException
 	 */
-	protected List<IDeviceLocation> createDeviceLocations(IDeviceAssignment assignment, Date date)
+	protected int createDeviceLocations(IDeviceAssignment assignment, Date date, Random random)
 			throws SiteWhereException {
 		long current = date.getTime();
 		Polygon zone = GeoUtils.createPolygonForLocations(zoneLocations);
@@ -361,21 +602,22 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 
 		double cx = centroid.getX();
 		double cy = centroid.getY();
-		double deltaX = (Math.sqrt(Math.random()) * step * 2) - step;
-		double deltaY = (Math.sqrt(Math.random()) * step * 2) - step;
+		double deltaX = (Math.sqrt(random.nextDouble()) * step * 2) - step;
+		double deltaY = (Math.sqrt(random.nextDouble()) * step * 2) - step;
 
 		// Used to rotate deltas to turn path and stay inside polygon.
 		AffineTransformation xform = new AffineTransformation();
 		xform.rotate(Math.toRadians(22.5));
 
-		List<IDeviceLocation> results = new ArrayList<IDeviceLocation>();
+		int count = 0;
+		DeviceEventBatch pending = new DeviceEventBatch();
 		GeometryFactory factory = new GeometryFactory();
 		DeviceLocationCreateRequest lastLoc = null;
-		for (int x = 0; x < LOCATIONS_PER_ASSIGNMENT; x++) {
+		for (int x = 0; x < locationsPerAssignment; x++) {
 			boolean foundNext = false;
 
 			// Add a little randomness to path.
-			double waver = ((Math.random() * 20) - 10.0);
+			double waver = ((random.nextDouble() * 20) - 10.0);
 			AffineTransformation waverXform = new AffineTransformation();
 			waverXform.rotate(Math.toRadians(waver));
 			Coordinate waverDelta = new Coordinate(deltaX, deltaY);
@@ -394,9 +636,14 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 					request.setLongitude(end.x);
 					request.setElevation(0.0);
 					request.setEventDate(new Date(current));
-					IDeviceLocation created = getDeviceManagement().addDeviceLocation(assignment, request);
+					if (useEventBatches) {
+						pending.getLocations().add(request);
+					} else {
+						pace(1);
+						getDeviceManagement().addDeviceLocation(assignment, request);
+					}
 					lastLoc = request;
-					results.add(created);
+					count++;
 
 					cx = cx + deltaX;
 					cy = cy + deltaY;
@@ -409,9 +656,15 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 					deltaY = delta.y;
 				}
 			}
-			current += 30000;
+			if (DeviceEventBatches.size(pending) >= eventBatchSize) {
+				sendBatch(assignment, pending);
+				pending = new DeviceEventBatch();
+			}
+			current += locationIntervalMs;
 		}
-		LOGGER.info(PREFIX_CREATE_EVENTS + " " + results.size() + " locations. ");
+		sendBatch(assignment, pending);
+		eventCount.addAndGet(count);
+		LOGGER.debug(PREFIX_CREATE_EVENTS + " " + count + " locations. ");
 
 		// Update assignment state.
 		if (lastLoc != null) {
@@ -419,16 +672,17 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 			batch.getLocations().add(lastLoc);
 			getDeviceManagement().updateDeviceAssignmentState(assignment.getToken(), batch);
 		}
-		return results;
+		return count;
 	}
 
 	/**
 	 * Gets a random location tracker assignment choice entry.
 	 * 
+	 * @param random
 	 * @return
 	 */
-	protected AssignmentChoice getRandomAssignmentChoice() {
-		int slot = (int) Math.floor(LOCATION_TRACKERS.length * Math.random());
+	protected AssignmentChoice getRandomAssignmentChoice(Random random) {
+		int slot = random.nextInt(LOCATION_TRACKERS.length);
 		return LOCATION_TRACKERS[slot];
 	}
 
@@ -476,4 +730,92 @@ public class DefaultDeviceModelInitializer implements IDeviceModelInitializer {
 	protected void setDeviceManagement(IDeviceManagement deviceManagement) {
 		this.deviceManagement = deviceManagement;
 	}
+
+	public int getNumSites() {
+		return numSites;
+	}
+
+	public void setNumSites(int numSites) {
+		this.numSites = numSites;
+	}
+
+	public int getAssignmentsPerSite() {
+		return assignmentsPerSite;
+	}
+
+	public void setAssignmentsPerSite(int assignmentsPerSite) {
+		this.assignmentsPerSite = assignmentsPerSite;
+	}
+
+	public int getEventsPerAssignment() {
+		return eventsPerAssignment;
+	}
+
+	public void setEventsPerAssignment(int eventsPerAssignment) {
+		this.eventsPerAssignment = eventsPerAssignment;
+	}
+
+	public int getLocationsPerAssignment() {
+		return locationsPerAssignment;
+	}
+
+	public void setLocationsPerAssignment(int locationsPerAssignment) {
+		this.locationsPerAssignment = locationsPerAssignment;
+	}
+
+	public long getMeasurementIntervalMs() {
+		return measurementIntervalMs;
+	}
+
+	public void setMeasurementIntervalMs(long measurementIntervalMs) {
+		this.measurementIntervalMs = measurementIntervalMs;
+	}
+
+	public long getLocationIntervalMs() {
+		return locationIntervalMs;
+	}
+
+	public void setLocationIntervalMs(long locationIntervalMs) {
+		this.locationIntervalMs = locationIntervalMs;
+	}
+
+	public int getEventsPerSecond() {
+		return eventsPerSecond;
+	}
+
+	public void setEventsPerSecond(int eventsPerSecond) {
+		this.eventsPerSecond = eventsPerSecond;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	public Long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(Long seed) {
+		this.seed = seed;
+	}
+
+	public boolean isUseEventBatches() {
+		return useEventBatches;
+	}
+
+	public void setUseEventBatches(boolean useEventBatches) {
+		this.useEventBatches = useEventBatches;
+	}
+
+	public int getEventBatchSize() {
+		return eventBatchSize;
+	}
+
+	public void setEventBatchSize(int eventBatchSize) {
+		this.eventBatchSize = eventBatchSize;
+	}
 }
\ No newline at end of file
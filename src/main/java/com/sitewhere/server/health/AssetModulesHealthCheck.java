@@ -0,0 +1,57 @@
+/*
+ * AssetModulesHealthCheck.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.sitewhere.server.asset.AssetModuleManager;
+import com.sitewhere.server.asset.AssetModuleStatus;
+import com.sitewhere.spi.asset.IAssetModule;
+import com.sitewhere.spi.asset.IAssetModuleManager;
+
+/**
+ * Reports the status of each asset module. The check is unhealthy if any module is not
+ * available. Only {@link AssetModuleManager} tracks module status, so other managers are
+ * reported as healthy once they have modules.
+ * 
+ * @author Derek
+ */
+public class AssetModulesHealthCheck extends HealthCheck {
+
+	/** Asset module manager to inspect */
+	private final IAssetModuleManager assetModuleManager;
+
+	public AssetModulesHealthCheck(IAssetModuleManager assetModuleManager) {
+		this.assetModuleManager = assetModuleManager;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.codahale.metrics.health.HealthCheck#check()
+	 */
+	protected Result check() throws Exception {
+		StringBuilder message = new StringBuilder();
+		boolean healthy = true;
+		for (IAssetModule<?> module : assetModuleManager.getModules()) {
+			AssetModuleStatus status = AssetModuleStatus.Available;
+			if (assetModuleManager instanceof AssetModuleManager) {
+				status = ((AssetModuleManager) assetModuleManager).getModuleStatus(module);
+			}
+			if (status != AssetModuleStatus.Available) {
+				healthy = false;
+			}
+			if (message.length() > 0) {
+				message.append(", ");
+			}
+			message.append(module.getId()).append("=").append(status);
+		}
+		return healthy ? Result.healthy(message.toString()) : Result.unhealthy(message.toString());
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * CachedHealthCheck.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.health;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheck;
+
+/**
+ * Health check that returns the result of the last run of another check rather than
+ * running it on demand. {@link #refresh()} is called on a schedule, so frequent probes
+ * from a load balancer never reach the underlying resource. Each run is timed and a run
+ * that succeeds but takes longer than the allowed latency is reported as unhealthy. If no
+ * run has completed within the interval plus the allowed latency, the delegate is assumed
+ * to be hung and the check is reported as unhealthy regardless of the last result.
+ * 
+ * @author Derek
+ */
+public class CachedHealthCheck extends HealthCheck {
+
+	/** Check that does the work */
+	private final HealthCheck delegate;
+
+	/** Times each run of the delegate */
+	private final Timer latency;
+
+	/** Interval (in ms) between scheduled runs */
+	private final long intervalMs;
+
+	/** Time (in ms) a run may take before the check is reported as unhealthy */
+	private final long maxLatencyMs;
+
+	/** Result of the last run */
+	private volatile Result result = Result.unhealthy("Health check has not run yet.");
+
+	/** Time the last run completed or the check was created if it has not run */
+	private volatile long lastCompleted = System.currentTimeMillis();
+
+	public CachedHealthCheck(String name, HealthCheck delegate, long intervalMs, long maxLatencyMs,
+			MetricRegistry registry) {
+		this.delegate = delegate;
+		this.intervalMs = intervalMs;
+		this.maxLatencyMs = maxLatencyMs;
+		this.latency = registry.timer(MetricRegistry.name(name, "latency"));
+	}
+
+	/**
+	 * Run the delegate check and cache its result.
+	 */
+	public void refresh() {
+		long start = System.nanoTime();
+		Result current = delegate.execute();
+		long elapsed = System.nanoTime() - start;
+		latency.update(elapsed, TimeUnit.NANOSECONDS);
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsed);
+		if ((current.isHealthy()) && (elapsedMs > maxLatencyMs)) {
+			current = Result.unhealthy("Check took " + elapsedMs + "ms which exceeds the limit of "
+					+ maxLatencyMs + "ms.");
+		}
+		result = current;
+		lastCompleted = System.currentTimeMillis();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.codahale.metrics.health.HealthCheck#check()
+	 */
+	protected Result check() throws Exception {
+		long sinceMs = System.currentTimeMillis() - lastCompleted;
+		if (sinceMs > intervalMs + maxLatencyMs) {
+			return Result.unhealthy("Check has not completed in " + sinceMs + "ms which exceeds the limit of "
+					+ (intervalMs + maxLatencyMs) + "ms.");
+		}
+		return result;
+	}
+}
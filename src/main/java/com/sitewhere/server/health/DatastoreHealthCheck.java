@@ -0,0 +1,39 @@
+/*
+ * DatastoreHealthCheck.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.sitewhere.rest.model.search.SearchCriteria;
+import com.sitewhere.spi.device.IDeviceManagement;
+
+/**
+ * Checks that the device management datastore can be read by listing a single site.
+ * 
+ * @author Derek
+ */
+public class DatastoreHealthCheck extends HealthCheck {
+
+	/** Device management implementation to probe */
+	private final IDeviceManagement deviceManagement;
+
+	public DatastoreHealthCheck(IDeviceManagement deviceManagement) {
+		this.deviceManagement = deviceManagement;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.codahale.metrics.health.HealthCheck#check()
+	 */
+	protected Result check() throws Exception {
+		deviceManagement.listSites(new SearchCriteria(1, 1));
+		return Result.healthy();
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * ScheduledHealthChecks.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.health;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.codahale.metrics.health.HealthCheckRegistry;
+import com.sitewhere.core.DaemonThreadFactory;
+
+/**
+ * Registers health checks that run on a schedule and serve cached results. The pool has
+ * a thread for each check, so a check that hangs does not stop the others from running.
+ * Stopping unregisters the checks, so a new instance can register replacements under the
+ * same names.
+ * 
+ * @author Derek
+ */
+public class ScheduledHealthChecks {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(ScheduledHealthChecks.class);
+
+	/** Registry checks are added to */
+	private final HealthCheckRegistry healthChecks;
+
+	/** Registry check latencies are added to */
+	private final MetricRegistry metrics;
+
+	/** Interval (in ms) between runs of each check */
+	private final long intervalMs;
+
+	/** Time (in ms) a check may take before it is reported as unhealthy */
+	private final long maxLatencyMs;
+
+	/** Scheduled runs of registered checks by name */
+	private final Map<String, ScheduledFuture<?>> runs = new ConcurrentHashMap<String, ScheduledFuture<?>>();
+
+	/** Runs the checks */
+	private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+			new DaemonThreadFactory("SiteWhere Health Checks"));
+
+	public ScheduledHealthChecks(HealthCheckRegistry healthChecks, MetricRegistry metrics, long intervalMs,
+			long maxLatencyMs) {
+		this.healthChecks = healthChecks;
+		this.metrics = metrics;
+		this.intervalMs = intervalMs;
+		this.maxLatencyMs = maxLatencyMs;
+	}
+
+	/**
+	 * Register a check that runs on the schedule, replacing any check already registered
+	 * under the name. The first run starts immediately.
+	 * 
+	 * @param name
+	 * @param check
+	 */
+	public void register(String name, HealthCheck check) {
+		final CachedHealthCheck cached =
+				new CachedHealthCheck(name, check, intervalMs, maxLatencyMs, metrics);
+		healthChecks.unregister(name);
+		healthChecks.register(name, cached);
+		ScheduledFuture<?> previous = runs.remove(name);
+		if (previous != null) {
+			previous.cancel(true);
+		}
+		scheduler.setCorePoolSize(runs.size() + 1);
+		runs.put(name, scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				cached.refresh();
+			}
+		}, 0, intervalMs, TimeUnit.MILLISECONDS));
+		LOGGER.info("Registered health check: " + name);
+	}
+
+	/**
+	 * Stop running checks and unregister them.
+	 */
+	public void stop() {
+		scheduler.shutdownNow();
+		for (String name : runs.keySet()) {
+			healthChecks.unregister(name);
+		}
+		runs.clear();
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * UserStoreHealthCheck.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.health;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.sitewhere.spi.user.IUserManagement;
+
+/**
+ * Checks that the user store can be read by looking up a single user by name.
+ * 
+ * @author Derek
+ */
+public class UserStoreHealthCheck extends HealthCheck {
+
+	/** Username looked up by the probe. It does not need to exist */
+	public static final String PROBE_USERNAME = "sitewhere-health-probe";
+
+	/** User management implementation to probe */
+	private final IUserManagement userManagement;
+
+	public UserStoreHealthCheck(IUserManagement userManagement) {
+		this.userManagement = userManagement;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.codahale.metrics.health.HealthCheck#check()
+	 */
+	protected Result check() throws Exception {
+		userManagement.getUserByUsername(PROBE_USERNAME);
+		return Result.healthy();
+	}
+}
@@ -0,0 +1,337 @@
+/*
+ * HeavyHitterTimers.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Timer;
+
+/**
+ * Keeps timers for the most frequently seen keys of one dimension (for instance site
+ * tokens) using the space-saving algorithm over a Stream-Summary structure. Slots are
+ * grouped in buckets of equal count kept in ascending order, so counting a call and
+ * evicting the least frequent key are both constant time. When a new key arrives and all
+ * slots are used, a slot from the lowest bucket is reassigned to it and the newcomer
+ * inherits that count as its error bound.
+ * <p>
+ * A key only gets a timer once its guaranteed count (count minus error) reaches a
+ * threshold. Keys that briefly displace one another never allocate a timer, and timers
+ * that do exist describe calls actually made for their key. Timers are not registered
+ * individually. This object is registered as a single metric and exporters label each
+ * timer with its key (see {@link #getTimers()}).
+ * 
+ * @author Derek
+ */
+public class HeavyHitterTimers implements Metric {
+
+	/** Default guaranteed count at which a key gets a timer */
+	public static final int DEFAULT_TIMER_THRESHOLD = 10;
+
+	/** Maximum number of keys tracked */
+	private final int capacity;
+
+	/** Guaranteed count at which a key gets a timer */
+	private final long timerThreshold;
+
+	/** Tracked keys */
+	private final Map<String, Slot> slots;
+
+	/** Bucket with the lowest count or null if nothing is tracked */
+	private Bucket min;
+
+	public HeavyHitterTimers(int capacity) {
+		this(capacity, DEFAULT_TIMER_THRESHOLD);
+	}
+
+	public HeavyHitterTimers(int capacity, int timerThreshold) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.capacity = capacity;
+		this.timerThreshold = Math.max(1, timerThreshold);
+		this.slots = new HashMap<String, Slot>(capacity * 2);
+	}
+
+	/**
+	 * Record a call duration for a key.
+	 * 
+	 * @param key
+	 * @param durationNanos
+	 */
+	public void update(String key, long durationNanos) {
+		if (key == null) {
+			return;
+		}
+		Timer timer;
+		synchronized (this) {
+			Slot slot = slots.get(key);
+			if (slot == null) {
+				slot = claimSlot(key);
+			} else {
+				increment(slot);
+			}
+			if ((slot.timer == null) && (slot.bucket.count - slot.error >= timerThreshold)) {
+				slot.timer = new Timer();
+			}
+			timer = slot.timer;
+		}
+		if (timer != null) {
+			timer.update(durationNanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * Track a new key with a count of one. If all slots are used, a slot with the lowest
+	 * count is reassigned to the key. Must be called while holding the lock.
+	 * 
+	 * @param key
+	 * @return
+	 */
+	protected Slot claimSlot(String key) {
+		if (slots.size() >= capacity) {
+			Slot slot = min.head;
+			slots.remove(slot.key);
+			slot.key = key;
+			slot.error = min.count;
+			slot.timer = null;
+			slots.put(key, slot);
+			increment(slot);
+			return slot;
+		}
+		Slot slot = new Slot(key);
+		if ((min == null) || (min.count != 1)) {
+			Bucket bucket = new Bucket(1);
+			bucket.next = min;
+			if (min != null) {
+				min.prev = bucket;
+			}
+			min = bucket;
+		}
+		attach(slot, min);
+		slots.put(key, slot);
+		return slot;
+	}
+
+	/**
+	 * Move a slot to the bucket for its count plus one. Must be called while holding the
+	 * lock.
+	 * 
+	 * @param slot
+	 */
+	protected void increment(Slot slot) {
+		Bucket bucket = slot.bucket;
+		long count = bucket.count + 1;
+		Bucket target = bucket.next;
+		if ((target == null) || (target.count != count)) {
+			if ((bucket.head == slot) && (slot.next == null)) {
+				bucket.count = count;
+				return;
+			}
+			target = new Bucket(count);
+			target.prev = bucket;
+			target.next = bucket.next;
+			if (bucket.next != null) {
+				bucket.next.prev = target;
+			}
+			bucket.next = target;
+		}
+		detach(slot);
+		attach(slot, target);
+	}
+
+	/**
+	 * Add a slot to a bucket.
+	 * 
+	 * @param slot
+	 * @param bucket
+	 */
+	protected void attach(Slot slot, Bucket bucket) {
+		slot.bucket = bucket;
+		slot.prev = null;
+		slot.next = bucket.head;
+		if (bucket.head != null) {
+			bucket.head.prev = slot;
+		}
+		bucket.head = slot;
+	}
+
+	/**
+	 * Remove a slot from its bucket, unlinking the bucket if it becomes empty.
+	 * 
+	 * @param slot
+	 */
+	protected void detach(Slot slot) {
+		Bucket bucket = slot.bucket;
+		if (slot.prev != null) {
+			slot.prev.next = slot.next;
+		} else {
+			bucket.head = slot.next;
+		}
+		if (slot.next != null) {
+			slot.next.prev = slot.prev;
+		}
+		slot.prev = null;
+		slot.next = null;
+		slot.bucket = null;
+		if (bucket.head == null) {
+			if (bucket.prev != null) {
+				bucket.prev.next = bucket.next;
+			} else {
+				min = bucket.next;
+			}
+			if (bucket.next != null) {
+				bucket.next.prev = bucket.prev;
+			}
+		}
+	}
+
+	/**
+	 * Get the timers of tracked keys that have passed the threshold, by key.
+	 * 
+	 * @return
+	 */
+	public Map<String, Timer> getTimers() {
+		Map<String, Timer> timers = new LinkedHashMap<String, Timer>();
+		synchronized (this) {
+			for (Slot slot : slots.values()) {
+				if (slot.timer != null) {
+					timers.put(slot.key, slot.timer);
+				}
+			}
+		}
+		return timers;
+	}
+
+	/**
+	 * Get the tracked keys ordered by estimated count, highest first.
+	 * 
+	 * @return
+	 */
+	public List<HeavyHitter> getHeavyHitters() {
+		List<HeavyHitter> hitters = new ArrayList<HeavyHitter>();
+		synchronized (this) {
+			for (Slot slot : slots.values()) {
+				hitters.add(new HeavyHitter(slot.key, slot.bucket.count, slot.error));
+			}
+		}
+		Collections.sort(hitters, new Comparator<HeavyHitter>() {
+
+			public int compare(HeavyHitter a, HeavyHitter b) {
+				return (a.getCount() > b.getCount()) ? -1 : ((a.getCount() == b.getCount()) ? 0 : 1);
+			}
+		});
+		return hitters;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getTimerThreshold() {
+		return timerThreshold;
+	}
+
+	/**
+	 * A tracked key with its estimated count.
+	 * 
+	 * @author Derek
+	 */
+	public static class HeavyHitter {
+
+		/** Key */
+		private final String key;
+
+		/** Estimated number of calls. Overestimates by at most the error */
+		private final long count;
+
+		/** Maximum overestimate of the count */
+		private final long error;
+
+		public HeavyHitter(String key, long count, long error) {
+			this.key = key;
+			this.count = count;
+			this.error = error;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getError() {
+			return error;
+		}
+	}
+
+	/**
+	 * Group of slots that share a count.
+	 * 
+	 * @author Derek
+	 */
+	private static class Bucket {
+
+		/** Estimated number of calls for every slot in the bucket */
+		private long count;
+
+		/** First slot in the bucket */
+		private Slot head;
+
+		/** Bucket with the next lower count */
+		private Bucket prev;
+
+		/** Bucket with the next higher count */
+		private Bucket next;
+
+		public Bucket(long count) {
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Slot holding a tracked key.
+	 * 
+	 * @author Derek
+	 */
+	private static class Slot {
+
+		/** Key */
+		private String key;
+
+		/** Count inherited from the evicted key */
+		private long error;
+
+		/** Bucket holding the slot's count */
+		private Bucket bucket;
+
+		/** Previous slot in the bucket */
+		private Slot prev;
+
+		/** Next slot in the bucket */
+		private Slot next;
+
+		/** Timer for the key or null until the key passes the threshold */
+		private Timer timer;
+
+		public Slot(String key) {
+			this.key = key;
+		}
+	}
+}
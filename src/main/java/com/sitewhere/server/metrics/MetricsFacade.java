@@ -0,0 +1,401 @@
+/*
+ * MetricsFacade.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.log4j.Logger;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.sitewhere.server.batch.DeviceEventBatches;
+import com.sitewhere.server.cache.LruTtlCache;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceEventBatch;
+import com.sitewhere.spi.device.ISite;
+import com.sitewhere.spi.search.ISearchResults;
+
+/**
+ * Wraps an implementation of a management interface in a dynamic proxy that gathers
+ * metrics about every API call. Each interface method gets a timer and an error meter.
+ * Methods that return a collection or search results, or accept an event batch, also get
+ * a histogram of result or batch size.
+ * <p>
+ * Optionally, call durations are also timed per site token and per assignment token. The
+ * tokens are taken from site or assignment arguments, or from a leading token argument of
+ * methods that address a site or an assignment by token. Calls that only identify an
+ * assignment by token, such as {@code addDeviceEventBatch}, are attributed to the site of
+ * the assignment if it has been seen recently as an argument or result of another call.
+ * Assignments that have not been seen are not attributed to a site, since resolving them
+ * would add a datastore read to the call. Only the most frequent tokens are tracked (see
+ * {@link HeavyHitterTimers}) so the number of timers stays bounded. Each dimension is
+ * registered as a single metric that exporters expand into one timer per token. Calls
+ * slower than a threshold can be kept in a {@link SlowCallLog}.
+ * 
+ * @author Derek
+ */
+public class MetricsFacade implements InvocationHandler {
+
+	/** Static logger instance */
+	private static Logger LOGGER = Logger.getLogger(MetricsFacade.class);
+
+	/** Maximum number of assignments whose site token is remembered */
+	public static final int ASSIGNMENT_SITES_MAX_SIZE = 10000;
+
+	/** Time (in ms) the site token of an assignment is remembered */
+	public static final long ASSIGNMENT_SITES_TTL_MS = 60 * 60 * 1000;
+
+	/** Wrapped implementation */
+	private final Object delegate;
+
+	/** Metrics for each interface method */
+	private final Map<Method, MethodMetrics> metricsByMethod = new HashMap<Method, MethodMetrics>();
+
+	/** Timers for the most active sites or null if not tracked */
+	private final HeavyHitterTimers siteTimers;
+
+	/** Timers for the most active assignments or null if not tracked */
+	private final HeavyHitterTimers assignmentTimers;
+
+	/** Site tokens of recently seen assignments or null if not tracked */
+	private final LruTtlCache<String, String> assignmentSites;
+
+	/** Log of slow calls or null if not kept */
+	private final SlowCallLog slowCalls;
+
+	/** Marks calls whose metrics could not be recorded */
+	private final Meter recordingErrors;
+
+	/** Indicates whether a recording failure has been logged */
+	private final AtomicBoolean recordingErrorLogged = new AtomicBoolean();
+
+	protected MetricsFacade(Class<?> api, Object delegate, MetricRegistry registry, int trackedTokens,
+			SlowCallLog slowCalls) {
+		this.delegate = delegate;
+		this.slowCalls = slowCalls;
+		this.recordingErrors = registry.meter(MetricRegistry.name(api, "recordingErrors"));
+		for (Method method : api.getMethods()) {
+			metricsByMethod.put(method, new MethodMetrics(api, method, registry));
+		}
+		if (trackedTokens > 0) {
+			this.siteTimers = register(registry, MetricRegistry.name(api, "site"), trackedTokens);
+			this.assignmentTimers = register(registry, MetricRegistry.name(api, "assignment"), trackedTokens);
+			this.assignmentSites =
+					new LruTtlCache<String, String>(MetricRegistry.name(api, "assignmentSites"),
+							ASSIGNMENT_SITES_MAX_SIZE, ASSIGNMENT_SITES_TTL_MS, registry);
+		} else {
+			this.siteTimers = null;
+			this.assignmentTimers = null;
+			this.assignmentSites = null;
+		}
+	}
+
+	/**
+	 * Register per-token timers under a name, replacing any registered by an earlier proxy.
+	 * 
+	 * @param registry
+	 * @param name
+	 * @param trackedTokens
+	 * @return
+	 */
+	protected static HeavyHitterTimers register(MetricRegistry registry, String name, int trackedTokens) {
+		HeavyHitterTimers timers = new HeavyHitterTimers(trackedTokens);
+		registry.remove(name);
+		registry.register(name, timers);
+		return timers;
+	}
+
+	/**
+	 * Wrap an implementation of an interface in a metrics proxy.
+	 * 
+	 * @param api
+	 * @param delegate
+	 * @param registry
+	 * @return
+	 */
+	public static <T> T wrap(Class<T> api, T delegate, MetricRegistry registry) {
+		return wrap(api, delegate, registry, 0, null);
+	}
+
+	/**
+	 * Wrap an implementation of an interface in a metrics proxy that also times calls per
+	 * site token and per assignment token.
+	 * 
+	 * @param api
+	 * @param delegate
+	 * @param registry
+	 * @param trackedTokens maximum number of site tokens and of assignment tokens timed.
+	 *        Zero disables per-token timers.
+	 * @param slowCalls log that keeps slow calls or null for none
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> T wrap(Class<T> api, T delegate, MetricRegistry registry, int trackedTokens,
+			SlowCallLog slowCalls) {
+		return (T) Proxy.newProxyInstance(api.getClassLoader(), new Class<?>[] { api },
+				new MetricsFacade(api, delegate, registry, trackedTokens, slowCalls));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.reflect.InvocationHandler#invoke(java.lang.Object,
+	 * java.lang.reflect.Method, java.lang.Object[])
+	 */
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		MethodMetrics metrics = metricsByMethod.get(method);
+		if (metrics == null) {
+			return invokeDelegate(method, args);
+		}
+		final Timer.Context context = metrics.timer.time();
+		Object result = null;
+		boolean succeeded = false;
+		try {
+			result = invokeDelegate(method, args);
+			succeeded = true;
+			return result;
+		} catch (Throwable t) {
+			metrics.errors.mark();
+			throw t;
+		} finally {
+			record(metrics, method, args, result, succeeded, context.stop());
+		}
+	}
+
+	/**
+	 * Record sizes, per-token timings and slow calls for a completed call. Failures are
+	 * counted and the first one is logged, but they never reach the caller.
+	 * 
+	 * @param metrics
+	 * @param method
+	 * @param args
+	 * @param result
+	 * @param succeeded
+	 * @param elapsed
+	 */
+	private void record(MethodMetrics metrics, Method method, Object[] args, Object result,
+			boolean succeeded, long elapsed) {
+		try {
+			if (succeeded) {
+				metrics.recordSize(result, args);
+			}
+			if (siteTimers != null) {
+				rememberSite(metrics.getAssignment(args));
+				if (succeeded && (result instanceof IDeviceAssignment)) {
+					rememberSite((IDeviceAssignment) result);
+				}
+				String assignmentToken = metrics.getAssignmentToken(args);
+				String siteToken = metrics.getSiteToken(args);
+				if ((siteToken == null) && (assignmentToken != null)) {
+					siteToken = assignmentSites.get(assignmentToken);
+				}
+				siteTimers.update(siteToken, elapsed);
+				assignmentTimers.update(assignmentToken, elapsed);
+			}
+			if (slowCalls != null) {
+				slowCalls.record(method, args, elapsed);
+			}
+		} catch (RuntimeException e) {
+			recordingErrors.mark();
+			if (recordingErrorLogged.compareAndSet(false, true)) {
+				LOGGER.warn("Unable to record metrics for " + method.getName()
+						+ ". Further failures are only counted.", e);
+			}
+		}
+	}
+
+	/**
+	 * Remember the site token of an assignment so later calls that only pass its token can
+	 * be attributed to the site.
+	 * 
+	 * @param assignment
+	 */
+	protected void rememberSite(IDeviceAssignment assignment) {
+		if ((assignment != null) && (assignment.getToken() != null) && (assignment.getSiteToken() != null)) {
+			assignmentSites.put(assignment.getToken(), assignment.getSiteToken());
+		}
+	}
+
+	/**
+	 * Invoke a method on the delegate, unwrapping exceptions thrown by the implementation.
+	 * 
+	 * @param method
+	 * @param args
+	 * @return
+	 * @throws Throwable
+	 */
+	protected Object invokeDelegate(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(delegate, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Metrics gathered for a single interface method.
+	 * 
+	 * @author Derek
+	 */
+	private static class MethodMetrics {
+
+		/** Times invocations */
+		private final Timer timer;
+
+		/** Marks invocations that threw an exception */
+		private final Meter errors;
+
+		/** Sizes of returned results */
+		private Histogram resultSizes;
+
+		/** Index of an event batch argument or -1 if none */
+		private int batchArgument = -1;
+
+		/** Sizes of event batch arguments */
+		private Histogram batchSizes;
+
+		/** Index of a site or site token argument or -1 if none */
+		private int siteArgument = -1;
+
+		/** Index of an assignment or assignment token argument or -1 if none */
+		private int assignmentArgument = -1;
+
+		public MethodMetrics(Class<?> api, Method method, MetricRegistry registry) {
+			this.timer = registry.timer(MetricRegistry.name(api, method.getName(), "timer"));
+			this.errors = registry.meter(MetricRegistry.name(api, method.getName(), "errors"));
+			Class<?> returnType = method.getReturnType();
+			if ((Collection.class.isAssignableFrom(returnType))
+					|| (ISearchResults.class.isAssignableFrom(returnType))) {
+				this.resultSizes = registry.histogram(MetricRegistry.name(api, method.getName(), "resultSize"));
+			}
+			Class<?>[] params = method.getParameterTypes();
+			for (int i = 0; i < params.length; i++) {
+				if (IDeviceEventBatch.class.isAssignableFrom(params[i])) {
+					this.batchArgument = i;
+					this.batchSizes =
+							registry.histogram(MetricRegistry.name(api, method.getName(), "batchSize"));
+					break;
+				}
+			}
+			findTokenArguments(method, params);
+		}
+
+		/**
+		 * Find the arguments that identify a site or an assignment. Object arguments are
+		 * used wherever they appear. A leading string argument is taken as a site token for
+		 * methods that address a site and as an assignment token for methods that address
+		 * an assignment or list its events.
+		 * 
+		 * @param method
+		 * @param params
+		 */
+		protected void findTokenArguments(Method method, Class<?>[] params) {
+			for (int i = 0; i < params.length; i++) {
+				if ((siteArgument == -1) && (ISite.class.isAssignableFrom(params[i]))) {
+					siteArgument = i;
+				} else if ((assignmentArgument == -1) && (IDeviceAssignment.class.isAssignableFrom(params[i]))) {
+					assignmentArgument = i;
+				}
+			}
+			if ((params.length == 0) || (params[0] != String.class)) {
+				return;
+			}
+			String name = method.getName();
+			if ((name.contains("Site")) || (name.equals("listZones"))) {
+				siteArgument = 0;
+			} else if (((name.contains("DeviceAssignment")) && (!name.contains("History")))
+					|| (name.equals("addDeviceEventBatch")) || (name.equals("listDeviceMeasurements"))
+					|| (name.equals("listDeviceLocations")) || (name.equals("listDeviceAlerts"))) {
+				assignmentArgument = 0;
+			}
+		}
+
+		/**
+		 * Get the site token for a call.
+		 * 
+		 * @param args
+		 * @return the token or null if the call does not identify a site
+		 */
+		public String getSiteToken(Object[] args) {
+			if (siteArgument != -1) {
+				Object arg = args[siteArgument];
+				if (arg instanceof ISite) {
+					return ((ISite) arg).getToken();
+				}
+				return (arg instanceof String) ? (String) arg : null;
+			}
+			if ((assignmentArgument != -1) && (args[assignmentArgument] instanceof IDeviceAssignment)) {
+				return ((IDeviceAssignment) args[assignmentArgument]).getSiteToken();
+			}
+			return null;
+		}
+
+		/**
+		 * Get the assignment object passed to a call.
+		 * 
+		 * @param args
+		 * @return the assignment or null if the call does not take one
+		 */
+		public IDeviceAssignment getAssignment(Object[] args) {
+			if ((assignmentArgument != -1) && (args[assignmentArgument] instanceof IDeviceAssignment)) {
+				return (IDeviceAssignment) args[assignmentArgument];
+			}
+			return null;
+		}
+
+		/**
+		 * Get the assignment token for a call.
+		 * 
+		 * @param args
+		 * @return the token or null if the call does not identify an assignment
+		 */
+		public String getAssignmentToken(Object[] args) {
+			if (assignmentArgument == -1) {
+				return null;
+			}
+			Object arg = args[assignmentArgument];
+			if (arg instanceof IDeviceAssignment) {
+				return ((IDeviceAssignment) arg).getToken();
+			}
+			return (arg instanceof String) ? (String) arg : null;
+		}
+
+		/**
+		 * Record result and batch sizes if applicable.
+		 * 
+		 * @param result
+		 * @param args
+		 */
+		public void recordSize(Object result, Object[] args) {
+			if ((resultSizes != null) && (result != null)) {
+				if (result instanceof Collection) {
+					resultSizes.update(((Collection<?>) result).size());
+				} else if (result instanceof ISearchResults) {
+					Collection<?> results = ((ISearchResults<?>) result).getResults();
+					if (results != null) {
+						resultSizes.update(results.size());
+					}
+				}
+			}
+			if ((batchSizes != null) && (args[batchArgument] != null)) {
+				batchSizes.update(DeviceEventBatches.size((IDeviceEventBatch) args[batchArgument]));
+			}
+		}
+	}
+}
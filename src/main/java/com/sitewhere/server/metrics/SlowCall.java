@@ -0,0 +1,73 @@
+/*
+ * SlowCall.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.metrics;
+
+import java.util.Date;
+
+/**
+ * A call recorded by the {@link SlowCallLog}.
+ * 
+ * @author Derek
+ */
+public class SlowCall {
+
+	/** Time the call completed */
+	private final Date completed;
+
+	/** Name of the method called */
+	private final String method;
+
+	/** Summary of the call arguments */
+	private final String arguments;
+
+	/** Call duration in milliseconds */
+	private final double durationMs;
+
+	/** Name of the calling thread */
+	private final String thread;
+
+	public SlowCall(Date completed, String method, String arguments, double durationMs, String thread) {
+		this.completed = completed;
+		this.method = method;
+		this.arguments = arguments;
+		this.durationMs = durationMs;
+		this.thread = thread;
+	}
+
+	public Date getCompleted() {
+		return completed;
+	}
+
+	public String getMethod() {
+		return method;
+	}
+
+	public String getArguments() {
+		return arguments;
+	}
+
+	public double getDurationMs() {
+		return durationMs;
+	}
+
+	public String getThread() {
+		return thread;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return String.format("%tFT%<tT.%<tL %s(%s) %.1fms [%s]", completed, method, arguments, durationMs,
+				thread);
+	}
+}
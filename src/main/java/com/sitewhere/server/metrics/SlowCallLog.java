@@ -0,0 +1,225 @@
+/*
+ * SlowCallLog.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.metrics;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.sitewhere.server.batch.DeviceEventBatches;
+import com.sitewhere.spi.device.IDeviceAssignment;
+import com.sitewhere.spi.device.IDeviceEventBatch;
+import com.sitewhere.spi.device.ISite;
+import com.sitewhere.spi.search.IDateRangeSearchCriteria;
+import com.sitewhere.spi.search.ISearchCriteria;
+
+/**
+ * Keeps the most recent calls that took longer than a threshold in a fixed-size ring
+ * buffer. Writers claim a slot with an atomic counter and publish the entry with a single
+ * atomic store, so recording never blocks. Calls under the threshold cost one comparison.
+ * Older entries are overwritten once the buffer is full.
+ * 
+ * @author Derek
+ */
+public class SlowCallLog implements SlowCallLogMBean {
+
+	/** Default minimum duration (in ms) of a recorded call */
+	public static final long DEFAULT_THRESHOLD_MS = 500;
+
+	/** Default number of calls kept */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** Maximum length of a string argument in the summary */
+	private static final int MAX_STRING_LENGTH = 64;
+
+	/** Kept calls */
+	private final AtomicReferenceArray<SlowCall> entries;
+
+	/** Number of calls recorded, used to pick the next slot */
+	private final AtomicLong sequence = new AtomicLong();
+
+	/** Minimum duration (in ns) of a recorded call */
+	private volatile long thresholdNanos;
+
+	public SlowCallLog(long thresholdMs, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Slow call log capacity must be positive: " + capacity);
+		}
+		this.entries = new AtomicReferenceArray<SlowCall>(capacity);
+		setThresholdMs(thresholdMs);
+	}
+
+	/**
+	 * Record a call if it took longer than the threshold.
+	 * 
+	 * @param method
+	 * @param args
+	 * @param durationNanos
+	 */
+	public void record(Method method, Object[] args, long durationNanos) {
+		if (durationNanos < thresholdNanos) {
+			return;
+		}
+		SlowCall call =
+				new SlowCall(new Date(), method.getDeclaringClass().getSimpleName() + "." + method.getName(),
+						summarize(args), durationNanos / 1000000.0, Thread.currentThread().getName());
+		int slot = (int) (sequence.getAndIncrement() % entries.length());
+		entries.set(slot, call);
+	}
+
+	/**
+	 * Get the kept calls, newest first.
+	 * 
+	 * @return
+	 */
+	public List<SlowCall> getEntries() {
+		long end = sequence.get();
+		int capacity = entries.length();
+		List<SlowCall> calls = new ArrayList<SlowCall>();
+		for (long i = end - 1; (i >= 0) && (i >= end - capacity); i--) {
+			SlowCall call = entries.get((int) (i % capacity));
+			if (call != null) {
+				calls.add(call);
+			}
+		}
+		return calls;
+	}
+
+	/**
+	 * Summarize call arguments. Tokens, date ranges, paging and sizes are included while
+	 * other objects are reduced to their type name.
+	 * 
+	 * @param args
+	 * @return
+	 */
+	protected static String summarize(Object[] args) {
+		if (args == null) {
+			return "";
+		}
+		StringBuilder summary = new StringBuilder();
+		for (int i = 0; i < args.length; i++) {
+			if (i > 0) {
+				summary.append(", ");
+			}
+			summarize(args[i], summary);
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Append a summary of a single argument.
+	 * 
+	 * @param arg
+	 * @param summary
+	 */
+	protected static void summarize(Object arg, StringBuilder summary) {
+		if (arg == null) {
+			summary.append("null");
+		} else if (arg instanceof String) {
+			String value = (String) arg;
+			if (value.length() > MAX_STRING_LENGTH) {
+				value = value.substring(0, MAX_STRING_LENGTH) + "...";
+			}
+			summary.append('"').append(value).append('"');
+		} else if ((arg instanceof Number) || (arg instanceof Boolean) || (arg instanceof Enum)) {
+			summary.append(arg);
+		} else if (arg instanceof Date) {
+			summary.append(String.format("%tFT%<tT", (Date) arg));
+		} else if (arg instanceof ISite) {
+			summary.append("site=").append(((ISite) arg).getToken());
+		} else if (arg instanceof IDeviceAssignment) {
+			summary.append("assignment=").append(((IDeviceAssignment) arg).getToken());
+		} else if (arg instanceof IDeviceEventBatch) {
+			summary.append("batch[").append(DeviceEventBatches.size((IDeviceEventBatch) arg)).append(']');
+		} else if (arg instanceof Collection) {
+			summary.append("collection[").append(((Collection<?>) arg).size()).append(']');
+		} else if (arg instanceof ISearchCriteria) {
+			ISearchCriteria criteria = (ISearchCriteria) arg;
+			summary.append("page=").append(criteria.getPageNumber()).append(" pageSize=").append(
+					criteria.getPageSize());
+			if (arg instanceof IDateRangeSearchCriteria) {
+				IDateRangeSearchCriteria range = (IDateRangeSearchCriteria) arg;
+				summary.append(" start=");
+				summarize(range.getStartDate(), summary);
+				summary.append(" end=");
+				summarize(range.getEndDate(), summary);
+			}
+		} else {
+			summary.append(arg.getClass().getSimpleName());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.server.metrics.SlowCallLogMBean#getThresholdMs()
+	 */
+	public long getThresholdMs() {
+		return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.server.metrics.SlowCallLogMBean#setThresholdMs(long)
+	 */
+	public void setThresholdMs(long thresholdMs) {
+		this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.server.metrics.SlowCallLogMBean#getCapacity()
+	 */
+	public int getCapacity() {
+		return entries.length();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.server.metrics.SlowCallLogMBean#getRecordedCount()
+	 */
+	public long getRecordedCount() {
+		return sequence.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.server.metrics.SlowCallLogMBean#getSlowCalls()
+	 */
+	public String[] getSlowCalls() {
+		List<SlowCall> calls = getEntries();
+		String[] formatted = new String[calls.size()];
+		for (int i = 0; i < formatted.length; i++) {
+			formatted[i] = calls.get(i).toString();
+		}
+		return formatted;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see com.sitewhere.server.metrics.SlowCallLogMBean#clear()
+	 */
+	public void clear() {
+		for (int i = 0; i < entries.length(); i++) {
+			entries.set(i, null);
+		}
+		sequence.set(0);
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * SlowCallLogMBean.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.metrics;
+
+/**
+ * JMX management interface for {@link SlowCallLog}.
+ * 
+ * @author Derek
+ */
+public interface SlowCallLogMBean {
+
+	/**
+	 * Get the minimum duration (in ms) of a recorded call.
+	 * 
+	 * @return
+	 */
+	public long getThresholdMs();
+
+	/**
+	 * Set the minimum duration (in ms) of a recorded call.
+	 * 
+	 * @param thresholdMs
+	 */
+	public void setThresholdMs(long thresholdMs);
+
+	/**
+	 * Get the number of calls kept.
+	 * 
+	 * @return
+	 */
+	public int getCapacity();
+
+	/**
+	 * Get the number of slow calls recorded since the log was created or cleared.
+	 * 
+	 * @return
+	 */
+	public long getRecordedCount();
+
+	/**
+	 * Get the kept calls, newest first, formatted as text.
+	 * 
+	 * @return
+	 */
+	public String[] getSlowCalls();
+
+	/**
+	 * Remove all kept calls.
+	 */
+	public void clear();
+}
@@ -0,0 +1,341 @@
+/*
+ * MetricsServlet.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.health.HealthCheck;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.server.metrics.HeavyHitterTimers;
+
+/**
+ * Renders the server metric registry and health check results in the Prometheus text
+ * exposition format. Per-token timers ({@link HeavyHitterTimers}) are written as one
+ * family per dimension with the token as a label. Output is rendered into a reused buffer
+ * and the encoded bytes are cached for a short window, so frequent scrapes share a single
+ * rendering. The window can be set with the {@link #CACHE_MS_PARAM} init parameter.
+ * 
+ * @author Derek
+ */
+public class MetricsServlet extends HttpServlet {
+
+	/** Serial version UID */
+	private static final long serialVersionUID = -2968234183702711584L;
+
+	/** Init parameter for time (in ms) rendered output is reused */
+	public static final String CACHE_MS_PARAM = "cacheMs";
+
+	/** Default time (in ms) rendered output is reused */
+	public static final long DEFAULT_CACHE_MS = 1000;
+
+	/** Content type for the Prometheus text format */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/** Quantiles reported for histograms and timers */
+	private static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.98, 0.99, 0.999 };
+
+	/** Labels written for each quantile */
+	private static final String[] QUANTILE_LABELS = { "{quantile=\"0.5\"} ", "{quantile=\"0.75\"} ",
+			"{quantile=\"0.95\"} ", "{quantile=\"0.98\"} ", "{quantile=\"0.99\"} ", "{quantile=\"0.999\"} " };
+
+	/** Quantile labels written after another label */
+	private static final String[] TRAILING_QUANTILE_LABELS = { ",quantile=\"0.5\"} ", ",quantile=\"0.75\"} ",
+			",quantile=\"0.95\"} ", ",quantile=\"0.98\"} ", ",quantile=\"0.99\"} ", ",quantile=\"0.999\"} " };
+
+	/** Factor for converting timer durations from nanoseconds to seconds */
+	private static final double SECONDS_PER_NANO = 1.0 / TimeUnit.SECONDS.toNanos(1);
+
+	/** Time (in ms) rendered output is reused */
+	private long cacheMs = DEFAULT_CACHE_MS;
+
+	/** Buffer reused for rendering */
+	private final StringBuilder buffer = new StringBuilder(64 * 1024);
+
+	/** Last rendered output */
+	private volatile byte[] cached;
+
+	/** Time the cached output expires */
+	private volatile long cachedUntil;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.GenericServlet#init()
+	 */
+	@Override
+	public void init() throws ServletException {
+		super.init();
+		String param = getInitParameter(CACHE_MS_PARAM);
+		if (param != null) {
+			try {
+				cacheMs = Long.parseLong(param.trim());
+			} catch (NumberFormatException e) {
+				throw new ServletException("Invalid value for " + CACHE_MS_PARAM + ": " + param);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
+	 * javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+			IOException {
+		byte[] output = getOutput();
+		response.setContentType(CONTENT_TYPE);
+		response.setContentLength(output.length);
+		OutputStream out = response.getOutputStream();
+		out.write(output);
+		out.flush();
+	}
+
+	/**
+	 * Get the rendered output, rendering again if the cached copy has expired. Only one
+	 * thread renders at a time and others waiting on it reuse its result.
+	 * 
+	 * @return
+	 * @throws UnsupportedEncodingException
+	 */
+	protected byte[] getOutput() throws UnsupportedEncodingException {
+		byte[] output = cached;
+		if ((output != null) && (System.currentTimeMillis() < cachedUntil)) {
+			return output;
+		}
+		synchronized (buffer) {
+			if ((cached != null) && (System.currentTimeMillis() < cachedUntil)) {
+				return cached;
+			}
+			buffer.setLength(0);
+			render(SiteWhereServer.getInstance(), buffer);
+			output = buffer.toString().getBytes("UTF-8");
+			cached = output;
+			cachedUntil = System.currentTimeMillis() + cacheMs;
+			return output;
+		}
+	}
+
+	/**
+	 * Render all metrics and health checks.
+	 * 
+	 * @param server
+	 * @param out
+	 */
+	protected void render(SiteWhereServer server, StringBuilder out) {
+		MetricRegistry registry = server.getMetricRegistry();
+		for (Map.Entry<String, Gauge> entry : registry.getGauges().entrySet()) {
+			Object value = entry.getValue().getValue();
+			if (value instanceof Number) {
+				writeSample(out, entry.getKey(), "", "gauge", ((Number) value).doubleValue());
+			} else if (value instanceof Boolean) {
+				writeSample(out, entry.getKey(), "", "gauge", ((Boolean) value) ? 1 : 0);
+			}
+		}
+		for (Map.Entry<String, Counter> entry : registry.getCounters().entrySet()) {
+			writeSample(out, entry.getKey(), "", "counter", entry.getValue().getCount());
+		}
+		for (Map.Entry<String, Meter> entry : registry.getMeters().entrySet()) {
+			Meter meter = entry.getValue();
+			writeSample(out, entry.getKey(), "_total", "counter", meter.getCount());
+			writeSample(out, entry.getKey(), "_m1_rate", "gauge", meter.getOneMinuteRate());
+		}
+		for (Map.Entry<String, Histogram> entry : registry.getHistograms().entrySet()) {
+			Histogram histogram = entry.getValue();
+			writeSummary(out, entry.getKey(), histogram.getSnapshot(), histogram.getCount(), 1);
+		}
+		for (Map.Entry<String, Timer> entry : registry.getTimers().entrySet()) {
+			Timer timer = entry.getValue();
+			writeSummary(out, entry.getKey() + "_seconds", timer.getSnapshot(), timer.getCount(),
+					SECONDS_PER_NANO);
+			writeSample(out, entry.getKey(), "_m1_rate", "gauge", timer.getOneMinuteRate());
+		}
+		for (Map.Entry<String, Metric> entry : registry.getMetrics().entrySet()) {
+			if (entry.getValue() instanceof HeavyHitterTimers) {
+				writeTokenTimers(out, entry.getKey(), ((HeavyHitterTimers) entry.getValue()).getTimers());
+			}
+		}
+		Map<String, HealthCheck.Result> results = server.getHealthCheckRegistry().runHealthChecks();
+		if (!results.isEmpty()) {
+			out.append("# TYPE sitewhere_health_check gauge\n");
+			for (Map.Entry<String, HealthCheck.Result> entry : results.entrySet()) {
+				out.append("sitewhere_health_check{name=\"");
+				appendEscaped(out, entry.getKey());
+				out.append("\"} ").append(entry.getValue().isHealthy() ? 1 : 0).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * Write a single-valued metric.
+	 * 
+	 * @param out
+	 * @param name
+	 * @param suffix
+	 * @param type
+	 * @param value
+	 */
+	protected void writeSample(StringBuilder out, String name, String suffix, String type, double value) {
+		out.append("# TYPE ");
+		appendName(out, name);
+		out.append(suffix).append(' ').append(type).append('\n');
+		appendName(out, name);
+		out.append(suffix).append(' ');
+		appendValue(out, value);
+		out.append('\n');
+	}
+
+	/**
+	 * Write a snapshot as a summary with quantiles and a count.
+	 * 
+	 * @param out
+	 * @param name
+	 * @param snapshot
+	 * @param count
+	 * @param factor multiplier applied to snapshot values
+	 */
+	protected void writeSummary(StringBuilder out, String name, Snapshot snapshot, long count, double factor) {
+		out.append("# TYPE ");
+		appendName(out, name);
+		out.append(" summary\n");
+		for (int i = 0; i < QUANTILES.length; i++) {
+			appendName(out, name);
+			out.append(QUANTILE_LABELS[i]);
+			appendValue(out, snapshot.getValue(QUANTILES[i]) * factor);
+			out.append('\n');
+		}
+		appendName(out, name);
+		out.append("_count ").append(count).append('\n');
+	}
+
+	/**
+	 * Write timers kept per token as a summary family and a rate family, each labeled with
+	 * the token.
+	 * 
+	 * @param out
+	 * @param name
+	 * @param timers
+	 */
+	protected void writeTokenTimers(StringBuilder out, String name, Map<String, Timer> timers) {
+		out.append("# TYPE ");
+		appendName(out, name);
+		out.append("_seconds summary\n");
+		for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+			Snapshot snapshot = entry.getValue().getSnapshot();
+			for (int i = 0; i < QUANTILES.length; i++) {
+				appendName(out, name);
+				out.append("_seconds");
+				appendTokenLabel(out, entry.getKey());
+				out.append(TRAILING_QUANTILE_LABELS[i]);
+				appendValue(out, snapshot.getValue(QUANTILES[i]) * SECONDS_PER_NANO);
+				out.append('\n');
+			}
+			appendName(out, name);
+			out.append("_seconds_count");
+			appendTokenLabel(out, entry.getKey());
+			out.append("} ").append(entry.getValue().getCount()).append('\n');
+		}
+		out.append("# TYPE ");
+		appendName(out, name);
+		out.append("_m1_rate gauge\n");
+		for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+			appendName(out, name);
+			out.append("_m1_rate");
+			appendTokenLabel(out, entry.getKey());
+			out.append("} ");
+			appendValue(out, entry.getValue().getOneMinuteRate());
+			out.append('\n');
+		}
+	}
+
+	/**
+	 * Open a label set with a token label. The caller closes the set.
+	 * 
+	 * @param out
+	 * @param token
+	 */
+	protected static void appendTokenLabel(StringBuilder out, String token) {
+		out.append("{token=\"");
+		appendEscaped(out, token);
+		out.append('"');
+	}
+
+	/**
+	 * Append a metric name with characters not allowed by Prometheus replaced.
+	 * 
+	 * @param out
+	 * @param name
+	 */
+	protected static void appendName(StringBuilder out, String name) {
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			boolean valid =
+					((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || (c == '_') || (c == ':')
+							|| ((i > 0) && (c >= '0') && (c <= '9'));
+			out.append(valid ? c : '_');
+		}
+	}
+
+	/**
+	 * Append a label value with quotes, backslashes and newlines escaped.
+	 * 
+	 * @param out
+	 * @param value
+	 */
+	protected static void appendEscaped(StringBuilder out, String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				out.append('\\').append(c);
+			} else if (c == '\n') {
+				out.append("\\n");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Append a sample value. Whole numbers are written without a fraction.
+	 * 
+	 * @param out
+	 * @param value
+	 */
+	protected static void appendValue(StringBuilder out, double value) {
+		if (Double.isNaN(value)) {
+			out.append("NaN");
+		} else if (Double.isInfinite(value)) {
+			out.append((value > 0) ? "+Inf" : "-Inf");
+		} else if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+			out.append((long) value);
+		} else {
+			out.append(value);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * ReadinessFilter.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+import com.sitewhere.server.SiteWhereServer;
+
+/**
+ * Rejects requests with a 503 response until the SiteWhere server has finished starting.
+ * Map it in front of the API when {@link SiteWhereServerLoader} uses background startup.
+ * 
+ * @author Derek
+ */
+public class ReadinessFilter implements Filter {
+
+	/** Seconds clients are asked to wait before retrying */
+	private static final String RETRY_AFTER_SECONDS = "5";
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
+	 */
+	public void init(FilterConfig config) throws ServletException {
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.Filter#doFilter(javax.servlet.ServletRequest,
+	 * javax.servlet.ServletResponse, javax.servlet.FilterChain)
+	 */
+	public void doFilter(ServletRequest req, ServletResponse res, FilterChain chain) throws IOException,
+			ServletException {
+		SiteWhereServer server = SiteWhereServer.getInstance();
+		if (!server.isReady()) {
+			HttpServletResponse response = (HttpServletResponse) res;
+			String reason = (server.getStartupFailure() != null) ? "SiteWhere server failed to start."
+					: "SiteWhere server is starting.";
+			response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, reason);
+			return;
+		}
+		chain.doFilter(req, res);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.Filter#destroy()
+	 */
+	public void destroy() {
+	}
+}
@@ -19,11 +19,15 @@ import javax.servlet.http.HttpServlet;
 import org.apache.log4j.Logger;
 import org.mule.util.StringMessageUtils;
 
+import com.sitewhere.core.DaemonThreadFactory;
 import com.sitewhere.server.SiteWhereServer;
 import com.sitewhere.spi.SiteWhereException;
 
 /**
- * Initializes the SiteWhere server.
+ * Initializes the SiteWhere server. If the {@link #ASYNC_STARTUP_PARAM} init parameter is
+ * true, startup runs on a background thread and {@link #init()} returns immediately.
+ * Use {@link ReadinessFilter} to reject API calls until the server is ready. The server
+ * is stopped when the servlet is destroyed.
  * 
  * @author Derek
  */
@@ -35,6 +39,9 @@ public class SiteWhereServerLoader extends HttpServlet {
 	/** Static logger instance */
 	private static Logger LOGGER = Logger.getLogger(SiteWhereServerLoader.class);
 
+	/** Init parameter that enables background startup */
+	public static final String ASYNC_STARTUP_PARAM = "asyncStartup";
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -43,10 +50,40 @@ public class SiteWhereServerLoader extends HttpServlet {
 	@Override
 	public void init() throws ServletException {
 		super.init();
+		if (Boolean.parseBoolean(getInitParameter(ASYNC_STARTUP_PARAM))) {
+			LOGGER.info("Starting SiteWhere server in the background.");
+			new DaemonThreadFactory("SiteWhere Server Loader").newThread(new Runnable() {
+
+				public void run() {
+					startServer();
+				}
+			}).start();
+		} else {
+			startServer();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.GenericServlet#destroy()
+	 */
+	@Override
+	public void destroy() {
+		LOGGER.info("Stopping SiteWhere server.");
+		SiteWhereServer.getInstance().stop();
+		super.destroy();
+	}
+
+	/**
+	 * Create and start the server, logging any failure.
+	 */
+	protected void startServer() {
 		try {
 			SiteWhereServer.getInstance().create();
 			SiteWhereServer.getInstance().start();
 		} catch (SiteWhereException e) {
+			SiteWhereServer.getInstance().setStartupFailure(e);
 			List<String> messages = new ArrayList<String>();
 			messages.add("!!!! SiteWhere Server Failed to Start !!!!");
 			messages.add("");
@@ -56,6 +93,7 @@ public class SiteWhereServerLoader extends HttpServlet {
 			LOGGER.error(e);
 			e.printStackTrace();
 		} catch (Throwable e) {
+			SiteWhereServer.getInstance().setStartupFailure(e);
 			List<String> messages = new ArrayList<String>();
 			messages.add("!!!! Unhandled Exception !!!!");
 			messages.add("");
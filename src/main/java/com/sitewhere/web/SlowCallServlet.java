@@ -0,0 +1,63 @@
+/*
+ * SlowCallServlet.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.web;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sitewhere.server.SiteWhereServer;
+import com.sitewhere.server.metrics.SlowCallLog;
+
+/**
+ * Returns the slow device management calls kept by the server as JSON, newest first. The
+ * same log is available over JMX. Map this servlet behind admin authentication since
+ * argument summaries include site and assignment tokens.
+ * 
+ * @author Derek
+ */
+public class SlowCallServlet extends HttpServlet {
+
+	/** Serial version UID */
+	private static final long serialVersionUID = 4415012265327436610L;
+
+	/** Used to write JSON */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * javax.servlet.http.HttpServlet#doGet(javax.servlet.http.HttpServletRequest,
+	 * javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException,
+			IOException {
+		SlowCallLog log = SiteWhereServer.getInstance().getSlowCallLog();
+		if (log == null) {
+			response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "SiteWhere server is starting.");
+			return;
+		}
+		Map<String, Object> body = new LinkedHashMap<String, Object>();
+		body.put("thresholdMs", log.getThresholdMs());
+		body.put("capacity", log.getCapacity());
+		body.put("recordedCount", log.getRecordedCount());
+		body.put("calls", log.getEntries());
+		response.setContentType("application/json");
+		mapper.writeValue(response.getOutputStream(), body);
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * AssignmentStateMergeLogicTest.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.sitewhere.rest.model.device.DeviceAlert;
+import com.sitewhere.rest.model.device.DeviceAssignment;
+import com.sitewhere.rest.model.device.DeviceAssignmentState;
+import com.sitewhere.rest.model.device.DeviceEventBatch;
+import com.sitewhere.rest.model.device.DeviceMeasurement;
+import com.sitewhere.rest.model.device.request.DeviceAlertCreateRequest;
+import com.sitewhere.rest.model.device.request.DeviceMeasurementsCreateRequest;
+import com.sitewhere.spi.device.AlertLevel;
+import com.sitewhere.spi.device.IDeviceAlert;
+import com.sitewhere.spi.device.IDeviceMeasurement;
+
+/**
+ * Checks that the in-place merge logic for latest measurements and alerts in
+ * {@link SiteWherePersistence} produces the same entries as the map-rebuilding update
+ * logic. Entries are compared as sets since the merge logic intentionally keeps a
+ * different order.
+ * 
+ * @author Derek
+ */
+public class AssignmentStateMergeLogicTest {
+
+	/** Number of randomized cases */
+	private static final int CASES = 5000;
+
+	/** Small pool of names so states and batches share and repeat keys */
+	private static final int NAMES = 6;
+
+	/** Small pool of timestamps so equal event dates are common */
+	private static final long[] TIMES = { 1000, 2000, 3000 };
+
+	@Test
+	public void testMergeMatchesUpdate() throws Exception {
+		Random random = new Random(42);
+		for (int i = 0; i < CASES; i++) {
+			DeviceAssignment assignment = createAssignment(random);
+			DeviceEventBatch batch = createBatch(random);
+
+			DeviceAssignmentState expected = new DeviceAssignmentState();
+			SiteWherePersistence.assignmentStateMeasurementsUpdateLogic(assignment, expected, batch);
+			SiteWherePersistence.assignmentStateAlertsUpdateLogic(assignment, expected, batch);
+
+			DeviceAssignmentState actual = new DeviceAssignmentState();
+			SiteWherePersistence.assignmentStateMeasurementsMergeLogic(assignment, actual, batch);
+			SiteWherePersistence.assignmentStateAlertsMergeLogic(assignment, actual, batch);
+
+			String message = "Case " + i;
+			assertEquals(message, expected.getLatestMeasurements().size(), actual.getLatestMeasurements().size());
+			assertEquals(message, describeMeasurements(assignment, expected.getLatestMeasurements()),
+					describeMeasurements(assignment, actual.getLatestMeasurements()));
+			assertEquals(message, expected.getLatestAlerts().size(), actual.getLatestAlerts().size());
+			assertEquals(message, describeAlerts(assignment, expected.getLatestAlerts()),
+					describeAlerts(assignment, actual.getLatestAlerts()));
+		}
+	}
+
+	/**
+	 * Create an assignment whose state may be missing, have null lists or contain
+	 * duplicate names.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	protected DeviceAssignment createAssignment(Random random) {
+		DeviceAssignment assignment = new DeviceAssignment();
+		assignment.setToken("assignment");
+		assignment.setSiteToken("site");
+		int shape = random.nextInt(10);
+		if (shape == 0) {
+			return assignment;
+		}
+		DeviceAssignmentState state = new DeviceAssignmentState();
+		if (shape == 1) {
+			state.setLatestMeasurements(null);
+		} else {
+			int count = random.nextInt(NAMES * 2);
+			for (int i = 0; i < count; i++) {
+				DeviceMeasurement m = new DeviceMeasurement();
+				m.setName("m" + random.nextInt(NAMES));
+				m.setValue((double) random.nextInt(100));
+				m.setEventDate(new Date(TIMES[random.nextInt(TIMES.length)]));
+				state.getLatestMeasurements().add(m);
+			}
+		}
+		if (shape == 2) {
+			state.setLatestAlerts(null);
+		} else {
+			int count = random.nextInt(NAMES * 2);
+			for (int i = 0; i < count; i++) {
+				DeviceAlert a = new DeviceAlert();
+				a.setType("a" + random.nextInt(NAMES));
+				a.setLevel(AlertLevel.Info);
+				a.setMessage("existing " + i);
+				a.setEventDate(new Date(TIMES[random.nextInt(TIMES.length)]));
+				state.getLatestAlerts().add(a);
+			}
+		}
+		assignment.setState(state);
+		return assignment;
+	}
+
+	/**
+	 * Create a batch whose lists may be null or empty and whose requests may repeat names.
+	 * 
+	 * @param random
+	 * @return
+	 */
+	protected DeviceEventBatch createBatch(Random random) {
+		DeviceEventBatch batch = new DeviceEventBatch();
+		int shape = random.nextInt(10);
+		if (shape == 0) {
+			batch.setMeasurements(null);
+		} else {
+			int requests = random.nextInt(4);
+			for (int i = 0; i < requests; i++) {
+				DeviceMeasurementsCreateRequest mx = new DeviceMeasurementsCreateRequest();
+				mx.setEventDate(new Date(TIMES[random.nextInt(TIMES.length)]));
+				int count = random.nextInt(NAMES);
+				for (int j = 0; j < count; j++) {
+					mx.addOrReplaceMeasurement("m" + random.nextInt(NAMES), (double) random.nextInt(100));
+				}
+				batch.getMeasurements().add(mx);
+			}
+		}
+		if (shape == 1) {
+			batch.setAlerts(null);
+		} else {
+			int count = random.nextInt(NAMES * 2);
+			for (int i = 0; i < count; i++) {
+				DeviceAlertCreateRequest alert = new DeviceAlertCreateRequest();
+				alert.setType("a" + random.nextInt(NAMES));
+				alert.setLevel(AlertLevel.Warning);
+				alert.setMessage("batch " + i);
+				alert.setEventDate(new Date(TIMES[random.nextInt(TIMES.length)]));
+				batch.getAlerts().add(alert);
+			}
+		}
+		return batch;
+	}
+
+	/**
+	 * Describe measurements as a set. Entries carried over from the existing state are
+	 * identified by their position there and new entries by their field values.
+	 * 
+	 * @param assignment
+	 * @param measurements
+	 * @return
+	 */
+	protected Set<String> describeMeasurements(DeviceAssignment assignment, List<IDeviceMeasurement> measurements) {
+		List<IDeviceMeasurement> existing = new ArrayList<IDeviceMeasurement>();
+		if ((assignment.getState() != null) && (assignment.getState().getLatestMeasurements() != null)) {
+			existing.addAll(assignment.getState().getLatestMeasurements());
+		}
+		Set<String> described = new HashSet<String>();
+		for (IDeviceMeasurement m : measurements) {
+			int position = indexOfInstance(existing, m);
+			if (position != -1) {
+				described.add("existing:" + position);
+			} else {
+				described.add("new:" + m.getName() + "|" + m.getValue() + "|" + m.getEventDate().getTime() + "|"
+						+ m.getDeviceAssignmentToken());
+			}
+		}
+		return described;
+	}
+
+	/**
+	 * Describe alerts as a set. Entries carried over from the existing state are
+	 * identified by their position there and new entries by their field values.
+	 * 
+	 * @param assignment
+	 * @param alerts
+	 * @return
+	 */
+	protected Set<String> describeAlerts(DeviceAssignment assignment, List<IDeviceAlert> alerts) {
+		List<IDeviceAlert> existing = new ArrayList<IDeviceAlert>();
+		if ((assignment.getState() != null) && (assignment.getState().getLatestAlerts() != null)) {
+			existing.addAll(assignment.getState().getLatestAlerts());
+		}
+		Set<String> described = new HashSet<String>();
+		for (IDeviceAlert a : alerts) {
+			int position = indexOfInstance(existing, a);
+			if (position != -1) {
+				described.add("existing:" + position);
+			} else {
+				described.add("new:" + a.getType() + "|" + a.getLevel() + "|" + a.getMessage() + "|"
+						+ a.getEventDate().getTime() + "|" + a.getDeviceAssignmentToken());
+			}
+		}
+		return described;
+	}
+
+	/**
+	 * Find an entry by identity.
+	 * 
+	 * @param list
+	 * @param entry
+	 * @return
+	 */
+	protected static int indexOfInstance(List<?> list, Object entry) {
+		for (int i = 0; i < list.size(); i++) {
+			if (list.get(i) == entry) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
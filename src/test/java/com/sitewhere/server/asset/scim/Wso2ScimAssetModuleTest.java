@@ -0,0 +1,229 @@
+/*
+ * Wso2ScimAssetModuleTest.java
+ * --------------------------------------------------------------------------------------
+ * Copyright (c) Reveal Technologies, LLC. All rights reserved. http://www.reveal-tech.com
+ * 
+ * The software in this package is published under the terms of the CPAL v1.0
+ * license, a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ */
+package com.sitewhere.server.asset.scim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sitewhere.rest.model.asset.PersonAsset;
+import com.sitewhere.spi.SiteWhereException;
+import com.sitewhere.spi.asset.AssetType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests paged loading in {@link Wso2ScimAssetModule} against a stub SCIM server.
+ * 
+ * @author Derek
+ */
+public class Wso2ScimAssetModuleTest {
+
+	/** Path the stub server answers on */
+	private static final String PATH = "/wso2/scim/Users";
+
+	/** Stub SCIM server */
+	private HttpServer server;
+
+	/** Handler serving user pages */
+	private StubScimHandler handler;
+
+	/** Module under test */
+	private Wso2ScimAssetModule module;
+
+	@Before
+	public void setUp() throws Exception {
+		handler = new StubScimHandler();
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext(PATH, handler);
+		server.start();
+
+		module = new Wso2ScimAssetModule();
+		module.setUserUrl("http://localhost:" + server.getAddress().getPort() + PATH);
+		module.setPageSize(2);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		module.stop();
+		server.stop(0);
+	}
+
+	/**
+	 * Users are requested page by page and each keeps its own id.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testLoadsAllPages() throws Exception {
+		handler.users = 5;
+		module.start();
+
+		assertEquals(3, handler.requests);
+		assertEquals(5, module.search(AssetType.Person, "").size());
+		for (int i = 1; i <= 5; i++) {
+			PersonAsset asset = module.getAssetById(AssetType.Person, "user" + i);
+			assertNotNull(asset);
+			assertEquals("user" + i, asset.getId());
+			assertEquals("login" + i, asset.getUserName());
+			assertEquals("Given" + i + " Family" + i, asset.getName());
+			assertEquals("user" + i + "@example.com", asset.getEmailAddress());
+		}
+	}
+
+	/**
+	 * A server that ignores 'count' returns everything at once and is only asked once.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testServerIgnoringCount() throws Exception {
+		handler.users = 5;
+		handler.ignoreCount = true;
+		module.start();
+
+		assertEquals(1, handler.requests);
+		assertEquals(5, module.search(AssetType.Person, "").size());
+	}
+
+	/**
+	 * Paging stops once 'totalResults' resources have loaded even if more are available.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testStopsAtTotalResults() throws Exception {
+		handler.users = 10;
+		handler.reportedTotal = 4;
+		module.start();
+
+		assertEquals(2, handler.requests);
+		assertEquals(4, module.search(AssetType.Person, "").size());
+	}
+
+	/**
+	 * An HTTP error is reported with its status rather than as a parse failure.
+	 * 
+	 * @throws Exception
+	 */
+	@Test
+	public void testHttpError() throws Exception {
+		handler.users = 5;
+		handler.status = 500;
+		try {
+			module.start();
+			fail("Expected an exception for HTTP 500.");
+		} catch (SiteWhereException e) {
+			assertTrue(e.getMessage(), e.getMessage().indexOf("500") != -1);
+		}
+	}
+
+	/**
+	 * Serves SCIM user pages honoring 'startIndex' and 'count'.
+	 * 
+	 * @author Derek
+	 */
+	private static class StubScimHandler implements HttpHandler {
+
+		/** Number of users available */
+		private int users;
+
+		/** Total reported to clients or -1 to report the real total */
+		private int reportedTotal = -1;
+
+		/** Indicates whether 'count' is ignored */
+		private boolean ignoreCount;
+
+		/** Status code returned */
+		private int status = 200;
+
+		/** Number of requests received */
+		private volatile int requests;
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+		 */
+		public void handle(HttpExchange exchange) throws IOException {
+			requests++;
+			Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+			int start = query.containsKey("startIndex") ? Integer.parseInt(query.get("startIndex")) : 1;
+			int count = query.containsKey("count") ? Integer.parseInt(query.get("count")) : users;
+			if (ignoreCount) {
+				start = 1;
+				count = users;
+			}
+
+			StringBuilder json = new StringBuilder();
+			if (status >= 300) {
+				json.append("{\"Errors\":[{\"description\":\"failed\",\"code\":\"" + status + "\"}]}");
+			} else {
+				int total = (reportedTotal < 0) ? users : reportedTotal;
+				json.append("{\"schemas\":[\"urn:scim:schemas:core:1.0\"],");
+				json.append("\"totalResults\":").append(total).append(",\"Resources\":[");
+				int end = Math.min(users, start + count - 1);
+				for (int i = start; i <= end; i++) {
+					if (i > start) {
+						json.append(",");
+					}
+					json.append("{\"id\":\"user").append(i).append("\",");
+					json.append("\"userName\":\"login").append(i).append("\",");
+					json.append("\"name\":{\"givenName\":\"Given").append(i);
+					json.append("\",\"familyName\":\"Family").append(i).append("\"},");
+					json.append("\"emails\":[\"user").append(i).append("@example.com\"]}");
+				}
+				json.append("]}");
+			}
+
+			byte[] body = json.toString().getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, body.length);
+			OutputStream out = exchange.getResponseBody();
+			try {
+				out.write(body);
+			} finally {
+				out.close();
+			}
+		}
+
+		/**
+		 * Split a raw query string into parameters.
+		 * 
+		 * @param raw
+		 * @return
+		 */
+		private Map<String, String> parseQuery(String raw) {
+			Map<String, String> params = new HashMap<String, String>();
+			if (raw == null) {
+				return params;
+			}
+			for (String pair : raw.split("&")) {
+				int eq = pair.indexOf('=');
+				if (eq > 0) {
+					params.put(pair.substring(0, eq), pair.substring(eq + 1));
+				}
+			}
+			return params;
+		}
+	}
+}